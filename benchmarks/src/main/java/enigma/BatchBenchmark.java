@@ -0,0 +1,110 @@
+package enigma;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of converting a batch of short messages, each with its
+ *  own randomly chosen key, one machine at a time and with
+ *  LockstepBatch.  Scores are per batch, including building the
+ *  lockstep engine.
+ *  @author Jack Mango
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    /** Number of messages. */
+    @Param({"16", "256", "4096"})
+    public int messages;
+
+    /** Longest message; lengths are uniform from half this up. */
+    @Param({"40", "400"})
+    public int maxLength;
+
+    /** Build the machines and messages. */
+    @Setup(Level.Trial)
+    public void setup() {
+        MachineSpec spec = MachineSpec.parse(BenchConfig.CONFIG);
+        List<String[]> orders = spec.rotorOrders();
+        Random random = new Random(messages);
+        _machines = new Machine[messages];
+        _starts = new MachineState[messages];
+        _messages = new int[messages][];
+        _work = new int[messages][];
+        for (int k = 0; k < messages; k++) {
+            int[] posn = new int[spec.numRotors() - 1];
+            for (int i = 0; i < posn.length; i++) {
+                posn[i] = random.nextInt(26);
+            }
+            _machines[k] = spec.newMachine();
+            spec.settings(Settings.line(orders.get(random.nextInt(
+                orders.size())), posn, spec.alphabet(), "(HQ) (EX)"))
+                .applyTo(_machines[k]);
+            _starts[k] = _machines[k].snapshot();
+            _messages[k] = new int[maxLength / 2
+                                   + random.nextInt(maxLength / 2 + 1)];
+            for (int i = 0; i < _messages[k].length; i++) {
+                _messages[k][i] = random.nextInt(26);
+            }
+            _work[k] = new int[_messages[k].length];
+        }
+    }
+
+    /** Restore the machines and messages. */
+    private void reset() {
+        for (int k = 0; k < _machines.length; k++) {
+            _machines[k].restore(_starts[k]);
+            System.arraycopy(_messages[k], 0, _work[k], 0,
+                             _messages[k].length);
+        }
+    }
+
+    /** Machine.convert on each message in turn. */
+    @Benchmark
+    public int[][] sequential() {
+        reset();
+        for (int k = 0; k < _machines.length; k++) {
+            _machines[k].convert(_work[k], 0, _work[k].length, _work[k], 0);
+        }
+        return _work;
+    }
+
+    /** LockstepBatch on all the messages. */
+    @Benchmark
+    public int[][] lockstep() {
+        reset();
+        new LockstepBatch(_machines).convert(_work);
+        return _work;
+    }
+
+    /** A machine per message. */
+    private Machine[] _machines;
+
+    /** Starting state of each machine. */
+    private MachineState[] _starts;
+
+    /** The messages, as alphabet indices. */
+    private int[][] _messages;
+
+    /** Copies of the messages, converted in place. */
+    private int[][] _work;
+
+}
@@ -0,0 +1,70 @@
+package enigma;
+
+import java.util.Random;
+
+/** The machine configuration and messages shared by the benchmarks.
+ *  @author Jack Mango
+ */
+final class BenchConfig {
+
+    /** Not instantiable. */
+    private BenchConfig() {
+    }
+
+    /** A four-rotor naval configuration. */
+    static final String CONFIG =
+        TestUtils.navalConfig(5, 3, "I", "II", "III", "IV", "V", "Beta",
+                              "Gamma", "B");
+
+    /** A settings line for CONFIG. */
+    static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** A second settings line for CONFIG, using different rotors. */
+    static final String OTHER_SETTINGS =
+        "* B Gamma V II III QRST (AB) (CD)";
+
+    /** Return a machine configured by CONFIG and SETTINGS. */
+    static Machine machine() {
+        MachineSpec spec = MachineSpec.parse(CONFIG);
+        Machine mach = spec.newMachine();
+        spec.settings(SETTINGS).applyTo(mach);
+        return mach;
+    }
+
+    /** Return a random message of LEN upper-case letters. */
+    static String message(int len) {
+        Random random = new Random(len);
+        char[] result = new char[len];
+        for (int i = 0; i < len; i++) {
+            result[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(result);
+    }
+
+    /** Return input for Main holding about LETTERS message letters: a
+     *  mix of settings lines, blank lines and message lines of 60 to 600
+     *  letters in groups of five. */
+    static String input(int letters) {
+        String text = message(letters);
+        StringBuilder input = new StringBuilder();
+        int line = 0;
+        for (int p = 0; p < text.length(); line++) {
+            if (line % 50 == 0) {
+                input.append(line % 100 == 0 ? SETTINGS : OTHER_SETTINGS)
+                    .append('\n');
+            } else if (line % 17 == 0) {
+                input.append('\n');
+            }
+            int len = Math.min(60 + (line * 37) % 541, text.length() - p);
+            for (int i = 0; i < len; i += 5) {
+                input.append(text, p + i, p + Math.min(i + 5, len));
+                input.append(' ');
+            }
+            input.append('\n');
+            p += len;
+        }
+        return input.toString();
+    }
+
+}
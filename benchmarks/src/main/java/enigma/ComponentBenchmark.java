@@ -0,0 +1,123 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the per-character operations of the enigma classes,
+ *  each applied to every letter of the alphabet, so that scores are per
+ *  26 operations, and of reconfiguring a machine from a settings line.
+ *  @author Jack Mango
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComponentBenchmark {
+
+    /** Build the components under test. */
+    @Setup
+    public void setup() {
+        _alphabet = new Alphabet();
+        _permutation = new Permutation(
+            "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", _alphabet);
+        _rotor = new MovingRotor("I", _permutation, "Q");
+        _rotor.set(7);
+        _spec = MachineSpec.parse(BenchConfig.CONFIG);
+        _machine = BenchConfig.machine();
+        _letters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    }
+
+    /** Permutation.permute. */
+    @Benchmark
+    public int permute() {
+        int sum = 0;
+        for (int i = 0; i < 26; i++) {
+            sum += _permutation.permute(i);
+        }
+        return sum;
+    }
+
+    /** Permutation.invert. */
+    @Benchmark
+    public int invert() {
+        int sum = 0;
+        for (int i = 0; i < 26; i++) {
+            sum += _permutation.invert(i);
+        }
+        return sum;
+    }
+
+    /** Alphabet.toInt. */
+    @Benchmark
+    public int toInt() {
+        int sum = 0;
+        for (char c : _letters) {
+            sum += _alphabet.toInt(c);
+        }
+        return sum;
+    }
+
+    /** Rotor.convertForward. */
+    @Benchmark
+    public int convertForward() {
+        int sum = 0;
+        for (int i = 0; i < 26; i++) {
+            sum += _rotor.convertForward(i);
+        }
+        return sum;
+    }
+
+    /** Machine.convert(int), including the stepping of the rotors. */
+    @Benchmark
+    public int machineConvert() {
+        int sum = 0;
+        for (int i = 0; i < 26; i++) {
+            sum += _machine.convert(i);
+        }
+        return sum;
+    }
+
+    /** Reconfiguring a machine from a settings line, as Main.setUp
+     *  does, alternating between two settings lines. */
+    @Benchmark
+    public Machine setUp() {
+        _spec.settings(_flip ? BenchConfig.SETTINGS
+                       : BenchConfig.OTHER_SETTINGS).applyTo(_machine);
+        _flip = !_flip;
+        return _machine;
+    }
+
+    /** Alphabet under test. */
+    private Alphabet _alphabet;
+
+    /** Permutation under test. */
+    private Permutation _permutation;
+
+    /** Rotor under test. */
+    private Rotor _rotor;
+
+    /** Machine under test. */
+    private Machine _machine;
+
+    /** The letters of _alphabet. */
+    private char[] _letters;
+
+    /** Spec of _machine. */
+    private MachineSpec _spec;
+
+    /** Alternates the settings applied by setUp. */
+    private boolean _flip;
+
+}
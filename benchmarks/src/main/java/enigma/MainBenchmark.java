@@ -0,0 +1,79 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end benchmark of Main on generated input files: a mix of
+ *  settings lines, blank lines and message lines of 60 to 600 letters.
+ *  @author Jack Mango
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MainBenchmark {
+
+    /** Approximate number of message letters in the input. */
+    @Param({"100000", "10000000"})
+    public int letters;
+
+    /** Write the configuration and input files. */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        _dir = Files.createTempDirectory("enigma-bench");
+        _config = _dir.resolve("bench.conf");
+        _input = _dir.resolve("bench.in");
+        _output = _dir.resolve("bench.out");
+        Files.writeString(_config, BenchConfig.CONFIG);
+        Files.writeString(_input, BenchConfig.input(letters));
+    }
+
+    /** Remove the files written by setup. */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(_config);
+        Files.deleteIfExists(_input);
+        Files.deleteIfExists(_output);
+        Files.deleteIfExists(_dir);
+    }
+
+    /** Run Main over the input file. */
+    @Benchmark
+    public void process() {
+        Main.main(_config.toString(), _input.toString(),
+                  _output.toString());
+    }
+
+    /** Directory holding the files. */
+    private Path _dir;
+
+    /** Configuration file. */
+    private Path _config;
+
+    /** Input file. */
+    private Path _input;
+
+    /** Output file. */
+    private Path _output;
+
+}
@@ -0,0 +1,53 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Machine.convert(String) over messages of various
+ *  lengths.
+ *  @author Jack Mango
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    /** Message length. */
+    @Param({"10", "1000", "100000", "10000000"})
+    public int length;
+
+    /** Build the machine and message. */
+    @Setup(Level.Trial)
+    public void setup() {
+        _machine = BenchConfig.machine();
+        _message = BenchConfig.message(length);
+    }
+
+    /** Machine.convert(String) on a message of LENGTH letters. */
+    @Benchmark
+    public String convert() {
+        return _machine.convert(_message);
+    }
+
+    /** Machine under test. */
+    private Machine _machine;
+
+    /** Message being converted. */
+    private String _message;
+
+}
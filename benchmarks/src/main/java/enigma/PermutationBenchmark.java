@@ -0,0 +1,64 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of parsing permutations in cycle notation over alphabets
+ *  of various sizes, with each permutation a mix of short cycles and
+ *  one long one.
+ *  @author Jack Mango
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PermutationBenchmark {
+
+    /** Alphabet size. */
+    @Param({ "26", "1000", "10000", "20000" })
+    public int size;
+
+    /** Build the alphabet and cycles for SIZE. */
+    @Setup
+    public void setup() {
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            chars.append((char) (0x4E00 + i));
+        }
+        _alphabet = new Alphabet(chars.toString());
+        StringBuilder cycles = new StringBuilder();
+        int i = 0;
+        for (; i + 1 < size / 2; i += 2) {
+            cycles.append('(').append(chars.charAt(i))
+                .append(chars.charAt(i + 1)).append(") ");
+        }
+        cycles.append('(').append(chars, i, size).append(')');
+        _cycles = cycles.toString();
+    }
+
+    /** Permutation(String, Alphabet). */
+    @Benchmark
+    public Permutation parse() {
+        return new Permutation(_cycles, _alphabet);
+    }
+
+    /** Alphabet of the permutations. */
+    private Alphabet _alphabet;
+
+    /** Cycles parsed. */
+    private String _cycles;
+
+}
@@ -0,0 +1,73 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the two processors Main uses on stream input, over
+ *  input held in memory and output discarded: MessageProcessor, which
+ *  decodes lines into Strings, and ByteProcessor, which works on the
+ *  bytes.
+ *  @author Jack Mango
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamBenchmark {
+
+    /** Approximate number of message letters in the input. */
+    @Param({"1000000"})
+    public int letters;
+
+    /** Build the machine and input. */
+    @Setup(Level.Trial)
+    public void setup() {
+        _machine = BenchConfig.machine();
+        _input = BenchConfig.input(letters).getBytes();
+    }
+
+    /** MessageProcessor over the input. */
+    @Benchmark
+    public void chars() throws IOException {
+        new MessageProcessor(_machine, null)
+            .process(new BufferedReader(new InputStreamReader(
+                         new ByteArrayInputStream(_input)), 1 << 16),
+                     new OutputStreamWriter(OutputStream.nullOutputStream()));
+    }
+
+    /** ByteProcessor over the input. */
+    @Benchmark
+    public void bytes() throws IOException {
+        new ByteProcessor(_machine, null, null)
+            .process(new ByteArrayInputStream(_input),
+                     OutputStream.nullOutputStream());
+    }
+
+    /** Machine doing the conversions. */
+    private Machine _machine;
+
+    /** Input file contents. */
+    private byte[] _input;
+
+}
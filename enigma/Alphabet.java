@@ -1,21 +1,44 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are Unicode code
+ *  points, so an alphabet may hold supplementary characters and any
+ *  number of them.
  *  @author Jack Mango
  */
 class Alphabet {
 
-    /** A new alphabet containing CHARS. The K-th character has index
-     *  K (numbering from 0). No character may be duplicated. */
+    /** A new alphabet containing the code points of CHARS. The K-th
+     *  character has index K (numbering from 0). No character may be
+     *  duplicated. */
     Alphabet(String chars) {
-        _chars = chars;
-        for (int i = 0; i < _chars.length(); i++) {
-            if (i != _chars.indexOf(_chars.charAt(i))) {
+        _chars = chars.codePoints().toArray();
+        int lo = Character.MAX_CODE_POINT, hi = 0;
+        for (int ch : _chars) {
+            lo = Math.min(lo, ch);
+            hi = Math.max(hi, ch);
+        }
+        _bmp = hi <= Character.MAX_VALUE;
+        if (_chars.length > 0
+            && hi - lo < Math.max(DENSE_SLACK, DENSE_FACTOR * _chars.length)) {
+            _base = lo;
+            _dense = new int[hi - lo + 1];
+            Arrays.fill(_dense, -1);
+        } else {
+            int cap = Integer.highestOneBit(Math.max(1, _chars.length)) << 2;
+            _keys = new int[cap];
+            _values = new int[cap];
+            Arrays.fill(_values, -1);
+        }
+        for (int i = 0; i < _chars.length; i++) {
+            if (toIndex(_chars[i]) != -1) {
                 throw error("Duplicate letters not allowed!");
             }
+            put(_chars[i], i);
         }
     }
 
@@ -26,39 +49,108 @@ class Alphabet {
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _chars.length();
+        return _chars.length;
+    }
+
+    /** Returns true iff every character of this alphabet is a single
+     *  UTF-16 char, so that toChar applies to all of them. */
+    boolean isBmp() {
+        return _bmp;
     }
 
     /** Returns true if CH is in this alphabet. */
-    boolean contains(char ch) {
-        for (int i = 0; i < _chars.length(); i++) {
-            if (_chars.charAt(i) == ch) {
-                return true;
-            }
-        }
-        return false;
+    boolean contains(int ch) {
+        return toIndex(ch) != -1;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size(), which must be a single UTF-16 char. */
     char toChar(int index) {
-        if (index > _chars.length()) {
+        int ch = toCodePoint(index);
+        if (ch > Character.MAX_VALUE) {
+            throw error("Character is not a single UTF-16 unit!");
+        }
+        return (char) ch;
+    }
+
+    /** Returns the code point of character number INDEX in the alphabet,
+     *  where 0 <= INDEX < size(). */
+    int toCodePoint(int index) {
+        if (index < 0 || index >= _chars.length) {
             throw error("Character index out of range!");
         }
-        return _chars.charAt(index);
+        return _chars[index];
     }
 
     /** Returns the index of character CH which must be in
-     *  the alphabet. This is the inverse of toChar(). */
-    int toInt(char ch) {
-        int result = _chars.indexOf(ch);
+     *  the alphabet. This is the inverse of toCodePoint(). */
+    int toInt(int ch) {
+        int result = toIndex(ch);
         if (result == -1) {
             throw error("Character not in this alphabet!");
         }
         return result;
     }
 
-    /** Stores the characters of the alphabet in a char array. */
-    private String _chars;
+    /** Returns the index of CH, or -1 if CH is not in this alphabet. */
+    int toIndex(int ch) {
+        if (_dense != null) {
+            int k = ch - _base;
+            return k >= 0 && k < _dense.length ? _dense[k] : -1;
+        }
+        int mask = _keys.length - 1;
+        for (int h = hash(ch) & mask; _values[h] != -1; h = (h + 1) & mask) {
+            if (_keys[h] == ch) {
+                return _values[h];
+            }
+        }
+        return -1;
+    }
+
+    /** Record that CH has index INDEX. CH must not yet be present. */
+    private void put(int ch, int index) {
+        if (_dense != null) {
+            _dense[ch - _base] = index;
+            return;
+        }
+        int mask = _keys.length - 1;
+        int h = hash(ch) & mask;
+        while (_values[h] != -1) {
+            h = (h + 1) & mask;
+        }
+        _keys[h] = ch;
+        _values[h] = index;
+    }
+
+    /** Return a well-mixed hash of CH for the open-addressed table. */
+    private static int hash(int ch) {
+        int h = ch * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    /** A dense table is used whenever the characters span fewer than
+     *  DENSE_SLACK code points ... */
+    private static final int DENSE_SLACK = 1024;
+
+    /** ... or fewer than DENSE_FACTOR times the alphabet size. */
+    private static final int DENSE_FACTOR = 8;
+
+    /** Stores the code points of the alphabet. */
+    private final int[] _chars;
+
+    /** True iff all of _chars are in the Basic Multilingual Plane. */
+    private final boolean _bmp;
+
+    /** Smallest character of the alphabet when _dense is in use. */
+    private int _base;
+
+    /** When non-null, _dense[C - _base] is the index of C, or -1. */
+    private int[] _dense;
+
+    /** Keys of the open-addressed table used for sparse alphabets. */
+    private int[] _keys;
+
+    /** Values of the open-addressed table; -1 marks an empty slot. */
+    private int[] _values;
 
 }
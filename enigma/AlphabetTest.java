@@ -39,6 +39,41 @@ public class AlphabetTest {
         assertEquals(7, alphabet3.toInt('d'));
     }
 
+    @Test
+    public void sparseAlphabetTest() {
+        Alphabet offset = new Alphabet("HIJKLMNOPQ");
+        assertEquals(0, offset.toInt('H'));
+        assertEquals(9, offset.toInt('Q'));
+        assertFalse(offset.contains('A'));
+        assertFalse(offset.contains('R'));
+        Alphabet sparse = new Alphabet("a\u4e2d\uffff0\u0100");
+        for (int i = 0; i < sparse.size(); i += 1) {
+            assertEquals(i, sparse.toInt(sparse.toChar(i)));
+        }
+        assertFalse(sparse.contains('b'));
+        assertEquals(-1, sparse.toIndex('\u4e2e'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void duplicateTest() {
+        new Alphabet("AB\u9999CB");
+    }
 
+    @Test
+    public void supplementaryTest() {
+        Alphabet sup = new Alphabet("A\ud83d\ude00B\ud834\udd1e");
+        assertEquals(4, sup.size());
+        assertFalse(sup.isBmp());
+        assertTrue(alphabet1.isBmp());
+        assertEquals(0x1F600, sup.toCodePoint(1));
+        assertEquals(3, sup.toInt(0x1D11E));
+        assertEquals('B', sup.toChar(2));
+        assertFalse(sup.contains(0xD83D));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void supplementaryToCharTest() {
+        new Alphabet("A\ud83d\ude00").toChar(1);
+    }
 
 }
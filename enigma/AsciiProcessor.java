@@ -0,0 +1,285 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.ForkJoinPool;
+
+/** Applies a Machine to message lines in the input format of Main,
+ *  working on the bytes of the input rather than on decoded characters.
+ *  Subclasses find the lines of their input and supply its bytes (see at
+ *  and decode); message bytes are mapped to alphabet indices through a
+ *  table of 256 entries, and converted indices are mapped back to bytes
+ *  in an output buffer that subclasses write out (see write).  Only
+ *  usable for alphabets of ASCII characters (see isAscii).  A line
+ *  holding other bytes, or characters outside the alphabet, is decoded
+ *  and handled as a string, so that the output, and any error, is
+ *  exactly that of MessageProcessor.  A processor is used by one thread
+ *  at a time.
+ *  @author Jack Mango
+ */
+abstract class AsciiProcessor {
+
+    /** Size of the output buffer. */
+    static final int OUT_BUFFER = 1 << 16;
+
+    /** Number of characters converted by Machine at a time. */
+    private static final int CHUNK = 1 << 13;
+
+    /** Number of characters in each printed group. */
+    private static final int GROUP = 5;
+
+    /** Number of characters of a long message converted at a time in
+     *  parallel. */
+    private static final int PARALLEL_CHUNK = 1 << 22;
+
+    /** A processor converting with MACH, using POOL for messages of at
+     *  least Main.PARALLEL_MIN characters unless POOL is null, and
+     *  recording in PROFILE, unless it is null, where its time goes.
+     *  MACH's alphabet must be ASCII. */
+    AsciiProcessor(Machine mach, ForkJoinPool pool, Profile profile) {
+        _machine = mach;
+        _setups = new SetupCache(mach);
+        _pool = pool;
+        _profile = profile;
+        _newLine = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        Alphabet alpha = mach.alphabet();
+        _toIndex = new int[256];
+        for (int b = 0; b < _toIndex.length; b++) {
+            _toIndex[b] = b < 128 ? alpha.toIndex(b) : -1;
+        }
+        _toByte = new byte[alpha.size()];
+        for (int i = 0; i < _toByte.length; i++) {
+            _toByte[i] = (byte) alpha.toCodePoint(i);
+        }
+    }
+
+    /** Return true iff every character of ALPHA is ASCII. */
+    static boolean isAscii(Alphabet alpha) {
+        for (int i = 0; i < alpha.size(); i++) {
+            if (alpha.toCodePoint(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the input byte at POS, which lies in the line being
+     *  processed, as an unsigned value. */
+    abstract int at(long pos) throws IOException;
+
+    /** Return the input bytes [START, END) decoded with CHARSET. */
+    abstract String decode(long start, long end, Charset charset)
+        throws IOException;
+
+    /** Write the first LEN bytes of BYTES to the output. */
+    abstract void write(byte[] bytes, int len) throws IOException;
+
+    /** Record that processing of the input starts now. */
+    void begin() {
+        _time = System.nanoTime();
+    }
+
+    /** Process the line occupying input bytes [START, END), excluding its
+     *  terminator. */
+    void processLine(long start, long end) throws IOException {
+        if (_profile != null) {
+            _profile.line();
+        }
+        boolean blank = true, ascii = true, valid = true;
+        for (long k = start; k < end; k++) {
+            int b = at(k);
+            if (b >= 128) {
+                ascii = false;
+            } else {
+                blank &= Character.isWhitespace(b);
+                valid &= _toIndex[b] != -1 || Main.isSpace(b);
+            }
+        }
+        lap(Profile.INPUT);
+        if (!ascii) {
+            processLine(decode(start, end, Charset.defaultCharset()));
+        } else if (blank) {
+            put(_newLine);
+            lap(Profile.OUTPUT);
+        } else if (at(start) == '*') {
+            setUp(decode(start, end, StandardCharsets.US_ASCII));
+        } else if (!valid) {
+            processLine(decode(start, end, StandardCharsets.US_ASCII));
+        } else {
+            long time = System.nanoTime();
+            if (_profile != null) {
+                _profile.beginMessage();
+            }
+            convertLine(start, end);
+            Metrics.messageSince(time);
+        }
+    }
+
+    /** Convert and print the message occupying input bytes [START, END),
+     *  which are all whitespace or characters of my alphabet. */
+    private void convertLine(long start, long end) throws IOException {
+        boolean parallel = _pool != null && end - start >= Main.PARALLEL_MIN;
+        if (parallel && _bigChunk == null) {
+            _bigChunk = new int[PARALLEL_CHUNK];
+        }
+        int[] chunk = parallel ? _bigChunk : _chunk;
+        int group = 0, len = 0;
+        long p = start;
+        while (p < end) {
+            int n = 0;
+            for (; p < end && n < chunk.length; p++) {
+                int b = at(p);
+                if (!Main.isSpace(b)) {
+                    chunk[n] = _toIndex[b];
+                    n += 1;
+                }
+            }
+            lap(Profile.INPUT);
+            if (parallel && n >= Main.PARALLEL_MIN) {
+                _machine.convertParallel(chunk, 0, n, chunk, 0, _pool);
+            } else {
+                _machine.convert(chunk, 0, n, chunk, 0);
+            }
+            lap(Profile.CONVERT);
+            for (int i = 0; i < n; i++) {
+                if (group == GROUP) {
+                    put((byte) ' ');
+                    group = 0;
+                }
+                put(_toByte[chunk[i]]);
+                group += 1;
+            }
+            len += n;
+            lap(Profile.OUTPUT);
+        }
+        put(_newLine);
+        if (_profile != null) {
+            _profile.endMessage(len);
+        }
+        lap(Profile.OUTPUT);
+    }
+
+    /** Process LINE, which is either a line containing non-ASCII
+     *  characters or one that cannot be converted, the same way
+     *  MessageProcessor would. */
+    private void processLine(String line) throws IOException {
+        if (line.isBlank()) {
+            put(_newLine);
+            lap(Profile.OUTPUT);
+        } else if (line.charAt(0) == '*') {
+            setUp(line);
+        } else {
+            long start = System.nanoTime();
+            if (_profile != null) {
+                _profile.beginMessage();
+            }
+            char[] msg = new char[line.length()];
+            int len = 0;
+            for (int i = 0; i < line.length(); i++) {
+                if (!Main.isSpace(line.charAt(i))) {
+                    msg[len] = line.charAt(i);
+                    len += 1;
+                }
+            }
+            lap(Profile.INPUT);
+            _machine.convert(msg, 0, len, msg, 0);
+            lap(Profile.CONVERT);
+            for (int i = 0; i < len; i++) {
+                if (i > 0 && i % GROUP == 0) {
+                    put((byte) ' ');
+                }
+                put((byte) msg[i]);
+            }
+            put(_newLine);
+            if (_profile != null) {
+                _profile.endMessage(len);
+            }
+            lap(Profile.OUTPUT);
+            Metrics.messageSince(start);
+        }
+    }
+
+    /** Set up my machine from the settings line SETTINGS. */
+    private void setUp(String settings) {
+        if (_profile != null) {
+            _profile.beginSetUp(settings);
+        }
+        _setups.apply(settings);
+        if (_profile != null) {
+            _profile.endSetUp();
+        }
+        lap(Profile.SETUP);
+    }
+
+    /** If I am profiling, charge the time since _time to STAGE of
+     *  _profile and advance _time to now. */
+    private void lap(int stage) {
+        if (_profile != null) {
+            _time = _profile.lap(stage, _time);
+        }
+    }
+
+    /** Append B to the output. */
+    private void put(byte b) throws IOException {
+        if (_outLen == _out.length) {
+            flush();
+        }
+        _out[_outLen] = b;
+        _outLen += 1;
+    }
+
+    /** Append BYTES to the output. */
+    private void put(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            put(b);
+        }
+    }
+
+    /** Write out everything in the output buffer. */
+    void flush() throws IOException {
+        write(_out, _outLen);
+        _outLen = 0;
+    }
+
+    /** Machine doing the conversions. */
+    private final Machine _machine;
+
+    /** Sets up _machine from settings lines. */
+    private final SetupCache _setups;
+
+    /** Pool for converting long messages, or null. */
+    private final ForkJoinPool _pool;
+
+    /** Where my time goes, or null if I am not profiling. */
+    private final Profile _profile;
+
+    /** System.nanoTime() up to which _profile has been charged. */
+    private long _time;
+
+    /** Encoded line separator. */
+    private final byte[] _newLine;
+
+    /** _toIndex[B] is the alphabet index of the character with unsigned
+     *  byte value B, or -1. */
+    private final int[] _toIndex;
+
+    /** _toByte[K] is the byte of alphabet character K. */
+    private final byte[] _toByte;
+
+    /** Buffered output; its first _outLen bytes are yet to be written. */
+    private final byte[] _out = new byte[OUT_BUFFER];
+
+    /** Number of bytes in _out. */
+    private int _outLen;
+
+    /** Indices of the characters being converted. */
+    private final int[] _chunk = new int[CHUNK];
+
+    /** Indices of the characters of a long message being converted,
+     *  allocated on first use. */
+    private int[] _bigChunk;
+
+}
@@ -0,0 +1,238 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import static enigma.EnigmaException.*;
+
+/** Converts many messages, each with its own settings line, concurrently.
+ *  Jobs are divided into chunks of up to LockstepBatch.BLOCK, each run
+ *  as one task: the task sets up a machine per job, taking machines from
+ *  a pool shared by all tasks and returning them afterwards, and then
+ *  converts the chunk's messages together with a LockstepBatch.  Each
+ *  pooled machine is set up through its own SetupCache, so a settings
+ *  line that machine has seen before is restored rather than parsed.  Tasks
+ *  run on a virtual thread each where the JVM has them, at most as many
+ *  at a time as there are processors, and otherwise on a fixed pool of
+ *  that many platform threads.  An encryptor may be used by any number
+ *  of threads.
+ *  @author Jack Mango
+ */
+public final class BatchEncryptor implements AutoCloseable {
+
+    /** An encryptor for jobs on SPEC, using one thread per processor. */
+    public BatchEncryptor(MachineSpec spec) {
+        this(spec, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** An encryptor for jobs on SPEC, running at most THREADS tasks at
+     *  a time. */
+    public BatchEncryptor(MachineSpec spec, int threads) {
+        if (threads < 1) {
+            throw error("Need at least one thread");
+        }
+        _spec = spec;
+        _running = new Semaphore(threads);
+        _threads = TaskThreads.executor(threads);
+    }
+
+    /** A message to convert and the settings line to convert it with. */
+    public static final class Job {
+
+        /** A job converting MESSAGE with a machine set up by the settings
+         *  line SETTINGS ("* B Beta III IV I AXAE (HQ) (EX)"). */
+        public Job(String settings, String message) {
+            _settings = settings;
+            _message = message;
+        }
+
+        /** Return my settings line. */
+        public String settings() {
+            return _settings;
+        }
+
+        /** Return my message. */
+        public String message() {
+            return _message;
+        }
+
+        /** My settings line. */
+        private final String _settings;
+
+        /** My message. */
+        private final String _message;
+    }
+
+    /** The outcome of a job: its converted message or its error. */
+    public static final class Result {
+
+        /** The outcome of JOB, which produced OUTPUT or failed with
+         *  ERROR. */
+        Result(Job job, String output, EnigmaException error) {
+            _job = job;
+            _output = output;
+            _error = error;
+        }
+
+        /** Return my job. */
+        public Job job() {
+            return _job;
+        }
+
+        /** Return true iff my job succeeded. */
+        public boolean ok() {
+            return _error == null;
+        }
+
+        /** Return my job's converted message, throwing its error if it
+         *  failed. */
+        public String output() {
+            if (_error != null) {
+                throw _error;
+            }
+            return _output;
+        }
+
+        /** Return the message of my job's error, or null if it
+         *  succeeded. */
+        public String error() {
+            return _error == null ? null : _error.getMessage();
+        }
+
+        /** My job. */
+        private final Job _job;
+
+        /** My job's converted message, or null. */
+        private final String _output;
+
+        /** My job's error, or null. */
+        private final EnigmaException _error;
+    }
+
+    /** Start converting JOBS and return their results, in the order of
+     *  JOBS.  The stream waits for each result as it is read.  A job
+     *  whose settings line or message is in error fails alone. */
+    public Stream<Result> encryptAll(List<Job> jobs) {
+        ArrayList<Future<Result[]>> chunks = new ArrayList<>();
+        for (int lo = 0; lo < jobs.size(); lo += LockstepBatch.BLOCK) {
+            List<Job> chunk = List.copyOf(
+                jobs.subList(lo, Math.min(jobs.size(),
+                                          lo + LockstepBatch.BLOCK)));
+            chunks.add(_threads.submit(() -> run(chunk)));
+        }
+        return chunks.stream().flatMap(f -> Arrays.stream(results(f)));
+    }
+
+    /** Stop accepting jobs.  Jobs already started are finished. */
+    @Override
+    public void close() {
+        _threads.shutdown();
+    }
+
+    /** Return the results of the jobs in CHUNK. */
+    private Result[] run(List<Job> chunk) throws InterruptedException {
+        _running.acquire();
+        long start = System.nanoTime();
+        ArrayList<SetupCache> caches = new ArrayList<>();
+        try {
+            Result[] results = new Result[chunk.size()];
+            ArrayList<Integer> valid = new ArrayList<>();
+            ArrayList<int[]> messages = new ArrayList<>();
+            for (int k = 0; k < results.length; k++) {
+                SetupCache setups = _machines.poll();
+                if (setups == null) {
+                    setups = new SetupCache(_spec.newMachine());
+                }
+                caches.add(setups);
+                try {
+                    setups.apply(chunk.get(k).settings());
+                    messages.add(indices(chunk.get(k).message()));
+                    valid.add(k);
+                } catch (EnigmaException excp) {
+                    Metrics.reported(excp);
+                    results[k] = new Result(chunk.get(k), null, excp);
+                }
+            }
+            if (!valid.isEmpty()) {
+                Machine[] lanes = new Machine[valid.size()];
+                for (int i = 0; i < lanes.length; i++) {
+                    lanes[i] = caches.get(valid.get(i)).machine();
+                }
+                int[][] msgs = messages.toArray(new int[0][]);
+                new LockstepBatch(lanes).convert(msgs);
+                for (int i = 0; i < lanes.length; i++) {
+                    int k = valid.get(i);
+                    results[k] = new Result(chunk.get(k), text(msgs[i]),
+                                            null);
+                    Metrics.messageSince(start);
+                }
+            }
+            return results;
+        } finally {
+            _machines.addAll(caches);
+            _running.release();
+        }
+    }
+
+    /** Return the alphabet indices of the characters of MSG. */
+    private int[] indices(String msg) {
+        Alphabet alpha = _spec.alphabet();
+        int[] result = msg.codePoints().toArray();
+        for (int i = 0; i < result.length; i++) {
+            int index = alpha.toIndex(result[i]);
+            if (index == -1) {
+                throw error(String.format("Unknown character: %c",
+                                          result[i]));
+            }
+            result[i] = index;
+        }
+        return result;
+    }
+
+    /** Return the characters with alphabet indices MSG. */
+    private String text(int[] msg) {
+        Alphabet alpha = _spec.alphabet();
+        StringBuilder result = new StringBuilder(msg.length);
+        for (int index : msg) {
+            result.appendCodePoint(alpha.toCodePoint(index));
+        }
+        return result.toString();
+    }
+
+    /** Return the results computed by CHUNK, waiting for them. */
+    private static Result[] results(Future<Result[]> chunk) {
+        try {
+            return chunk.get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("Interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("Conversion failed: %s", excp.getCause());
+        }
+    }
+
+    /** The configuration of my machines. */
+    private final MachineSpec _spec;
+
+    /** Machines not in use by any task, each with the cache that sets
+     *  it up. */
+    private final ConcurrentLinkedQueue<SetupCache> _machines =
+        new ConcurrentLinkedQueue<>();
+
+    /** Limits the number of tasks running at once. */
+    private final Semaphore _running;
+
+    /** Runs the tasks. */
+    private final ExecutorService _threads;
+
+}
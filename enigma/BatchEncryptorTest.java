@@ -0,0 +1,98 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/** Tests of BatchEncryptor.
+ *  @author Jack Mango
+ */
+public class BatchEncryptorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Return NUM random jobs for SPEC, using RAND. */
+    private static List<BatchEncryptor.Job> jobs(MachineSpec spec, int num,
+                                                 Random rand) {
+        List<String[]> orders = spec.rotorOrders();
+        ArrayList<BatchEncryptor.Job> result = new ArrayList<>();
+        for (int k = 0; k < num; k += 1) {
+            int[] posn = new int[spec.numRotors() - 1];
+            for (int i = 0; i < posn.length; i += 1) {
+                posn[i] = rand.nextInt(26);
+            }
+            StringBuilder msg = new StringBuilder();
+            for (int i = rand.nextInt(300); i > 0; i -= 1) {
+                msg.append((char) ('A' + rand.nextInt(26)));
+            }
+            result.add(new BatchEncryptor.Job(
+                Settings.line(orders.get(rand.nextInt(orders.size())), posn,
+                              spec.alphabet(), "(HQ) (EX)"),
+                msg.toString()));
+        }
+        return result;
+    }
+
+    @Test
+    public void matchesSessionsTest() {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        List<BatchEncryptor.Job> jobs = jobs(spec, 1000, new Random(19));
+        try (BatchEncryptor batch = new BatchEncryptor(spec, 3)) {
+            for (int round = 0; round < 2; round += 1) {
+                List<BatchEncryptor.Result> results =
+                    batch.encryptAll(jobs).collect(Collectors.toList());
+                assertEquals(jobs.size(), results.size());
+                for (int k = 0; k < jobs.size(); k += 1) {
+                    assertEquals("job " + k,
+                                 spec.newSession(jobs.get(k).settings())
+                                 .convert(jobs.get(k).message()),
+                                 results.get(k).output());
+                    assertSame(jobs.get(k), results.get(k).job());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void errorTest() {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        List<BatchEncryptor.Job> jobs = jobs(spec, 100, new Random(23));
+        jobs.set(10, new BatchEncryptor.Job("* B Beta III IV IV AAAA",
+                                            "HELLO"));
+        jobs.set(20, new BatchEncryptor.Job(jobs.get(20).settings(),
+                                            "HELLO WORLD"));
+        try (BatchEncryptor batch = new BatchEncryptor(spec)) {
+            Iterator<BatchEncryptor.Result> results =
+                batch.encryptAll(jobs).iterator();
+            for (int k = 0; k < jobs.size(); k += 1) {
+                BatchEncryptor.Result result = results.next();
+                if (k == 10 || k == 20) {
+                    assertFalse("job " + k, result.ok());
+                    assertNotNull(result.error());
+                    try {
+                        result.output();
+                        fail("job " + k + " produced output");
+                    } catch (EnigmaException excp) {
+                        continue;
+                    }
+                }
+                assertTrue("job " + k, result.ok());
+                assertEquals(spec.newSession(jobs.get(k).settings())
+                             .convert(jobs.get(k).message()),
+                             result.output());
+            }
+            assertFalse(results.hasNext());
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.ForkJoinPool;
+
+/** An AsciiProcessor for a stream of message lines: lines are found by
+ *  scanning a byte buffer filled straight from the input stream, and
+ *  output is written straight to the output stream.  Only usable for
+ *  alphabets of ASCII characters read in a charset that encodes ASCII as
+ *  itself (see usable).
+ *  @author Jack Mango
+ */
+class ByteProcessor extends AsciiProcessor {
+
+    /** Initial size of the input buffer, which grows to hold the
+     *  longest line. */
+    static final int IN_BUFFER = 1 << 16;
+
+    /** A processor converting with MACH, using POOL for messages of at
+     *  least Main.PARALLEL_MIN characters unless POOL is null, and
+     *  recording in PROFILE, unless it is null, where its time goes.
+     *  MACH's alphabet must be usable. */
+    ByteProcessor(Machine mach, ForkJoinPool pool, Profile profile) {
+        super(mach, pool, profile);
+    }
+
+    /** Return true iff messages in ALPHA may be processed as bytes: its
+     *  characters are all ASCII, and the default charset decodes every
+     *  ASCII byte as that character. */
+    static boolean usable(Alphabet alpha) {
+        if (!isAscii(alpha)) {
+            return false;
+        }
+        byte[] ascii = new byte[128];
+        for (int b = 0; b < ascii.length; b++) {
+            ascii[b] = (byte) b;
+        }
+        return new String(ascii, Charset.defaultCharset())
+            .equals(new String(ascii, StandardCharsets.US_ASCII));
+    }
+
+    /** Process the lines of INPUT, writing the results to OUTPUT, which
+     *  is flushed even on error. */
+    void process(InputStream input, OutputStream output) throws IOException {
+        _input = input;
+        _output = output;
+        _pos = _limit = 0;
+        _eof = false;
+        try {
+            begin();
+            while (nextLine()) {
+                processLine(_lineStart, _lineEnd);
+            }
+        } finally {
+            flush();
+            output.flush();
+        }
+    }
+
+    /** Find the next input line, setting _lineStart and _lineEnd to the
+     *  bounds of its bytes in _buf (excluding its terminator) and _pos
+     *  to the start of the line after it.  As for BufferedReader, a line
+     *  ends at "\n", "\r" or "\r\n", or at the end of the input.  Return
+     *  false if there are no more lines. */
+    private boolean nextLine() throws IOException {
+        int k = _pos;
+        while (true) {
+            while (k < _limit && _buf[k] != '\n' && _buf[k] != '\r') {
+                k += 1;
+            }
+            if (k < _limit && (_buf[k] == '\n' || k + 1 < _limit || _eof)) {
+                _lineStart = _pos;
+                _lineEnd = k;
+                _pos = k + 1;
+                if (_buf[k] == '\r' && _pos < _limit && _buf[_pos] == '\n') {
+                    _pos += 1;
+                }
+                return true;
+            } else if (k == _limit && _eof) {
+                _lineStart = _pos;
+                _lineEnd = _pos = _limit;
+                return _lineStart < _lineEnd;
+            }
+            int scanned = k - _pos;
+            fill();
+            k = _pos + scanned;
+        }
+    }
+
+    /** Read more input into _buf after the unprocessed bytes, moving them
+     *  to the start of _buf and growing it if it is full, or set _eof if
+     *  there is no more. */
+    private void fill() throws IOException {
+        if (_pos > 0) {
+            System.arraycopy(_buf, _pos, _buf, 0, _limit - _pos);
+            _limit -= _pos;
+            _pos = 0;
+        }
+        if (_limit == _buf.length) {
+            byte[] bigger = new byte[2 * _buf.length];
+            System.arraycopy(_buf, 0, bigger, 0, _limit);
+            _buf = bigger;
+        }
+        int n = _input.read(_buf, _limit, _buf.length - _limit);
+        if (n < 0) {
+            _eof = true;
+        } else {
+            _limit += n;
+        }
+    }
+
+    @Override
+    int at(long pos) {
+        return _buf[(int) pos] & 0xff;
+    }
+
+    @Override
+    String decode(long start, long end, Charset charset) {
+        return new String(_buf, (int) start, (int) (end - start), charset);
+    }
+
+    @Override
+    void write(byte[] bytes, int len) throws IOException {
+        _output.write(bytes, 0, len);
+    }
+
+    /** Source of input, while processing. */
+    private InputStream _input;
+
+    /** Destination of output, while processing. */
+    private OutputStream _output;
+
+    /** Input bytes; those in [_pos, _limit) are yet to be processed. */
+    private byte[] _buf = new byte[IN_BUFFER];
+
+    /** Bounds of the unprocessed input in _buf. */
+    private int _pos, _limit;
+
+    /** Bounds of the line being processed in _buf. */
+    private int _lineStart, _lineEnd;
+
+    /** True iff the input has been read to its end. */
+    private boolean _eof;
+
+}
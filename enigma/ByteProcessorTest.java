@@ -0,0 +1,107 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.util.Scanner;
+
+/** Tests of ByteProcessor.
+ *  @author Jack Mango
+ */
+public class ByteProcessorTest {
+
+    /** A settings line for NAVAL_CONFIG. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** An input stream that returns at most one byte per read, so that
+     *  every line crosses a refill of the processor's buffer. */
+    private static class Trickle extends FilterInputStream {
+        /** A stream returning the bytes of IN one at a time. */
+        Trickle(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    /** Return a new machine for NAVAL_CONFIG. */
+    private static Machine machine() {
+        return MachineSpec.read(new Scanner(NAVAL_CONFIG)).newMachine();
+    }
+
+    /** Return the output of ByteProcessor on INPUT, read one byte at a
+     *  time iff TRICKLE, followed by any error message. */
+    private static String actual(String input, boolean trickle)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new ByteArrayInputStream(input.getBytes());
+        if (trickle) {
+            in = new Trickle(in);
+        }
+        String err = "";
+        try {
+            new ByteProcessor(machine(), null, null).process(in, out);
+        } catch (EnigmaException excp) {
+            err = "Error: " + excp.getMessage();
+        }
+        return out.toString() + err;
+    }
+
+    /** Check that ByteProcessor and MessageProcessor agree on INPUT. */
+    private static void check(String input) throws IOException {
+        String expected = messageOutput(input);
+        assertEquals(expected, actual(input, false));
+        assertEquals(expected, actual(input, true));
+    }
+
+    @Test
+    public void lineEndTest() throws IOException {
+        check(SETTINGS + "\nHELLO WORLD\n\nFROM HIS SHOULDER\n");
+        check(SETTINGS + "\r\nHELLO WORLD\r\n\r\nFROM HIS\r\n");
+        check(SETTINGS + "\rHELLO WORLD\r\rFROM HIS\rAB");
+        check(SETTINGS + "\nHELLO\r\n\rWORLD");
+        check("");
+        check("\n\n \t\n");
+    }
+
+    @Test
+    public void longLineTest() throws IOException {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; msg.length() < 3 * ByteProcessor.IN_BUFFER; i++) {
+            msg.append((char) ('A' + i % 26));
+            if (i % 7 == 6) {
+                msg.append(i % 2 == 0 ? ' ' : '\t');
+            }
+        }
+        String input = SETTINGS + "\n" + msg + "\n" + msg + "\n";
+        assertEquals(messageOutput(input), actual(input, false));
+    }
+
+    @Test
+    public void fallbackTest() throws IOException {
+        check(SETTINGS + "\nHELLO\nHELLO world\nMORE\n");
+        check(SETTINGS + "\nHELLO\nHEL\u00e9LO\n");
+        check(SETTINGS + "\nHELLO\n\u2003\nMORE\n");
+        check("HELLO\n");
+        check(SETTINGS + "\n* B Beta III IV\nHELLO\n");
+        check(SETTINGS + "\nAB\u001fCD\n\u001f\n");
+    }
+
+    @Test
+    public void usableTest() {
+        assertTrue(ByteProcessor.usable(machine().alphabet()));
+        assertFalse(ByteProcessor.usable(new Alphabet("ABC\u00e9")));
+    }
+
+}
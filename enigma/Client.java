@@ -0,0 +1,162 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import static enigma.EnigmaException.*;
+
+/** A client for Server, taking the same arguments as Main and producing
+ *  the same output and errors, but having the server do the work.
+ *  @author Jack Mango
+ */
+public final class Client {
+
+    /** Not instantiable. */
+    private Client() {
+    }
+
+    /** Convert messages as Main would, as directed by ARGS: optionally
+     *  "--socket PATH" or "--port N" giving the server's address (see
+     *  Server.main), followed by Main's arguments.  With "--stats" in
+     *  place of Main's arguments, prints the server's latency summary
+     *  instead. */
+    public static void main(String... args) {
+        try {
+            int k = 0;
+            SocketAddress address = Server.address(args, k);
+            if (address != null) {
+                k = 2;
+            } else {
+                address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                                Server.DEFAULT_PORT);
+            }
+            int n = args.length - k;
+            if (n == 1 && args[k].equals("--stats")) {
+                stats(address, System.out);
+                return;
+            }
+            if (n < 1 || n > 3) {
+                throw error("Only 1, 2, or 3 command-line arguments allowed");
+            }
+            InputStream input = System.in;
+            OutputStream output = System.out;
+            try {
+                if (n > 1) {
+                    input = new FileInputStream(args[k + 1]);
+                }
+                if (n > 2) {
+                    output = new FileOutputStream(args[k + 2]);
+                }
+            } catch (IOException excp) {
+                throw error("could not open %s",
+                            input == System.in ? args[k + 1] : args[k + 2]);
+            }
+            convert(address, new File(args[k]).getAbsolutePath(), input,
+                    output);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Have the server at ADDRESS convert INPUT with the configuration
+     *  file CONFIG (an absolute path), writing the results to OUTPUT.
+     *  Reports errors as EnigmaExceptions. */
+    static void convert(SocketAddress address, String config,
+                        InputStream input, OutputStream output) {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            DataOutputStream request = new DataOutputStream(
+                new BufferedOutputStream(Server.outputStream(channel),
+                                         Server.BUFFER_SIZE));
+            request.writeUTF(Server.CONVERT);
+            request.writeUTF(config);
+            Thread sender = new Thread(() -> send(input, request, channel));
+            sender.setDaemon(true);
+            sender.start();
+            receive(channel, output);
+        } catch (IOException excp) {
+            throw error("could not reach server at %s: %s", address,
+                        excp.getMessage());
+        }
+    }
+
+    /** Write the latency summary of the server at ADDRESS to OUTPUT. */
+    static void stats(SocketAddress address, OutputStream output) {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            DataOutputStream request = new DataOutputStream(
+                Server.outputStream(channel));
+            request.writeUTF(Server.STATS);
+            request.flush();
+            receive(channel, output);
+        } catch (IOException excp) {
+            throw error("could not reach server at %s: %s", address,
+                        excp.getMessage());
+        }
+    }
+
+    /** Copy INPUT to REQUEST and then close the sending side of
+     *  CHANNEL.  Failures show up as a truncated reply. */
+    private static void send(InputStream input, DataOutputStream request,
+                             SocketChannel channel) {
+        try {
+            input.transferTo(request);
+            request.flush();
+            channel.shutdownOutput();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Copy the DATA frames arriving on CHANNEL to OUTPUT until DONE,
+     *  throwing the error in an ERROR frame, or reporting that the
+     *  server closed the connection if the reply stops short. */
+    private static void receive(SocketChannel channel, OutputStream output)
+        throws IOException {
+        DataInputStream reply = new DataInputStream(new BufferedInputStream(
+            Server.inputStream(channel), Server.BUFFER_SIZE));
+        byte[] body = new byte[Server.BUFFER_SIZE];
+        try {
+            while (true) {
+                byte type = reply.readByte();
+                int len = reply.readInt();
+                if (body.length < len) {
+                    body = new byte[len];
+                }
+                reply.readFully(body, 0, len);
+                if (type == Server.DATA) {
+                    output.write(body, 0, len);
+                } else if (type == Server.DONE) {
+                    return;
+                } else if (type == Server.ERROR) {
+                    throw error("%s",
+                                new String(body, 0, len,
+                                           StandardCharsets.UTF_8));
+                } else {
+                    throw error("bad reply from server");
+                }
+            }
+        } catch (EOFException excp) {
+            throw error("server closed connection");
+        } finally {
+            output.flush();
+        }
+    }
+
+}
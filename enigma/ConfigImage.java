@@ -0,0 +1,283 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import static enigma.EnigmaException.*;
+
+/** Compiled configuration images.  An image holds everything a text
+ *  configuration describes in the form Machine uses it (the alphabet,
+ *  the numbers of slots and pawls, and for each rotor its name, kind,
+ *  notches and forward and inverse permutation tables), so that loading
+ *  it involves no parsing.  Images are memory-mapped when loaded, and
+ *  compiled by main ("java enigma.ConfigImage CONFIG IMAGE", or "make
+ *  compile-config CONFIG=... IMAGE=..." from the top directory).
+ *
+ *  An image starts with MAGIC, followed by the CRC-32 and length of the
+ *  rest of the image (the body), and then the CRC-32 and absolute path
+ *  of the text configuration it was compiled from.  An image whose body
+ *  does not match its checksum is rejected, as is one whose source still
+ *  exists but no longer matches its recorded checksum.  All numbers are
+ *  big-endian; strings are a length followed by UTF-8 bytes; characters
+ *  are four-byte code points; and notches and table entries are one,
+ *  two or four bytes wide, the fewest that hold any index of the
+ *  alphabet.
+ *  @author Jack Mango
+ */
+class ConfigImage {
+
+    /** First bytes of every image. */
+    static final byte[] MAGIC =
+        "ENIGIMG2".getBytes(StandardCharsets.US_ASCII);
+
+    /** Rotor kinds in images. */
+    private static final byte MOVING = 'M', FIXED = 'N', REFLECTOR = 'R';
+
+    /** Compile the text configuration file CONFIG, writing its image to
+     *  IMAGE. */
+    static void compile(String config, String image) {
+        Path source = Path.of(config).toAbsolutePath();
+        byte[] text;
+        try {
+            text = Files.readAllBytes(source);
+        } catch (IOException excp) {
+            throw error("could not open %s", config);
+        }
+        MachineSpec spec = MachineSpec.read(
+            new StringReader(new String(text)));
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeBody(new DataOutputStream(body), spec);
+            byte[] bytes = body.toByteArray();
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(result);
+            out.write(MAGIC);
+            out.writeInt(crc(ByteBuffer.wrap(bytes)));
+            out.writeInt(bytes.length);
+            out.writeInt(crc(ByteBuffer.wrap(text)));
+            writeString(out, source.toString());
+            out.write(bytes);
+            Files.write(Path.of(image), result.toByteArray());
+        } catch (IOException excp) {
+            throw error("could not write %s", image);
+        }
+    }
+
+    /** Return true iff the file named NAME starts with MAGIC. */
+    static boolean isImage(String name) {
+        try (FileChannel in = FileChannel.open(Path.of(name))) {
+            ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+            while (start.hasRemaining() && in.read(start) >= 0) {
+                continue;
+            }
+            return !start.hasRemaining()
+                && ByteBuffer.wrap(MAGIC).equals(start.flip());
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Return the spec held in the image file named NAME. */
+    static MachineSpec load(String name) {
+        long start = System.nanoTime();
+        ByteBuffer image;
+        try (FileChannel in = FileChannel.open(Path.of(name),
+                                               StandardOpenOption.READ)) {
+            image = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            image.get(magic);
+            if (!ByteBuffer.wrap(magic).equals(ByteBuffer.wrap(MAGIC))) {
+                throw error("%s is not a configuration image", name);
+            }
+            int bodyCrc = image.getInt();
+            int bodyLength = image.getInt();
+            int sourceCrc = image.getInt();
+            String source = readString(image);
+            if (image.remaining() != bodyLength
+                || crc(image.slice()) != bodyCrc) {
+                throw error("configuration image %s is corrupt", name);
+            }
+            checkSource(source, sourceCrc, name);
+            MachineSpec result = readBody(image);
+            Metrics.loadSince(start);
+            return result;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                 | NegativeArraySizeException | IllegalArgumentException excp) {
+            throw error("configuration image %s is corrupt", name);
+        }
+    }
+
+    /** Check that the configuration file SOURCE, from which image NAME
+     *  was compiled, either no longer exists or still has checksum CRC. */
+    private static void checkSource(String source, int crc, String name) {
+        Path path = Path.of(source);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            if (crc(ByteBuffer.wrap(Files.readAllBytes(path))) != crc) {
+                throw error("configuration image %s is out of date with %s",
+                            name, source);
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Write the body of the image of SPEC to OUT. */
+    private static void writeBody(DataOutputStream out, MachineSpec spec)
+        throws IOException {
+        Alphabet alpha = spec.alphabet();
+        int n = alpha.size();
+        int width = width(n);
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            out.writeInt(alpha.toCodePoint(i));
+        }
+        out.writeInt(spec.numRotors());
+        out.writeInt(spec.numPawls());
+        out.writeInt(spec.rotors().size());
+        for (Rotor rotor : spec.rotors()) {
+            writeString(out, rotor.name());
+            out.writeByte(rotor.reflecting() ? REFLECTOR
+                          : rotor.rotates() ? MOVING : FIXED);
+            ArrayList<Integer> notches = new ArrayList<>();
+            for (int p = 0; p < n; p++) {
+                if (rotor.atNotch(p)) {
+                    notches.add(p);
+                }
+            }
+            out.writeInt(notches.size());
+            for (int p : notches) {
+                writeEntry(out, p, width);
+            }
+            Permutation perm = rotor.permutation();
+            for (int p = 0; p < n; p++) {
+                writeEntry(out, perm.permute(p), width);
+            }
+            for (int p = 0; p < n; p++) {
+                writeEntry(out, perm.invert(p), width);
+            }
+        }
+    }
+
+    /** Return the spec in the image body at the position of IMAGE. */
+    private static MachineSpec readBody(ByteBuffer image) {
+        int n = image.getInt();
+        int width = width(n);
+        int[] chars = new int[n];
+        image.asIntBuffer().get(chars);
+        image.position(image.position() + 4 * n);
+        Alphabet alpha = new Alphabet(new String(chars, 0, n));
+        int numRotors = image.getInt();
+        int numPawls = image.getInt();
+        int count = image.getInt();
+        ArrayList<Rotor> rotors = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            String name = readString(image);
+            byte kind = image.get();
+            int[] notches = readTable(image, image.getInt(), width);
+            Permutation perm = new Permutation(readTable(image, n, width),
+                                               readTable(image, n, width),
+                                               alpha);
+            if (kind == MOVING) {
+                rotors.add(new MovingRotor(name, perm, notches));
+            } else if (kind == FIXED) {
+                rotors.add(new FixedRotor(name, perm));
+            } else if (kind == REFLECTOR) {
+                rotors.add(new Reflector(name, perm));
+            } else {
+                throw error("bad rotor description");
+            }
+        }
+        return new MachineSpec(alpha, numRotors, numPawls, rotors);
+    }
+
+    /** Write table entry P to OUT in WIDTH bytes. */
+    private static void writeEntry(DataOutputStream out, int p, int width)
+        throws IOException {
+        if (width == 1) {
+            out.writeByte(p);
+        } else if (width == 2) {
+            out.writeChar(p);
+        } else {
+            out.writeInt(p);
+        }
+    }
+
+    /** Return the next LEN table entries of IMAGE, each WIDTH bytes. */
+    private static int[] readTable(ByteBuffer image, int len, int width) {
+        int[] result = new int[len];
+        for (int i = 0; i < len; i++) {
+            if (width == 1) {
+                result[i] = image.get() & 0xff;
+            } else if (width == 2) {
+                result[i] = image.getChar();
+            } else {
+                result[i] = image.getInt();
+            }
+        }
+        return result;
+    }
+
+    /** Write S to OUT as a length and UTF-8 bytes. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return the string at the position of IMAGE. */
+    private static String readString(ByteBuffer image) {
+        byte[] bytes = new byte[image.getInt()];
+        image.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Number of bytes in each notch and table entry of an image of an
+     *  alphabet of SIZE characters. */
+    private static int width(int size) {
+        return size <= 1 << 8 ? 1 : size <= Permutation.CHAR_LIMIT ? 2 : 4;
+    }
+
+    /** Return the CRC-32 of the remaining bytes of BUF, consuming them. */
+    private static int crc(ByteBuffer buf) {
+        CRC32 crc = new CRC32();
+        crc.update(buf);
+        return (int) crc.getValue();
+    }
+
+    /** Compile a configuration as directed by ARGS: the name of a text
+     *  configuration file and the name of the image file to write. */
+    public static void main(String... args) {
+        try {
+            if (args.length != 2) {
+                throw error("Usage: java enigma.ConfigImage CONFIG IMAGE");
+            }
+            compile(args[0], args[1]);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+}
@@ -0,0 +1,132 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+
+/** Tests of ConfigImage.
+ *  @author Jack Mango
+ */
+public class ConfigImageTest {
+
+    /** A configuration with every kind of rotor. */
+    private static final String CONFIG =
+        navalConfig(5, 3, "I", "II", "III", "VI", "Beta", "B");
+
+    /** A settings line for CONFIG. */
+    private static final String SETTINGS =
+        "* B Beta VI II I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** A message. */
+    private static final String MSG =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING"
+        + "FOLDINGROSEWOODNEATLYPUTITALLTOGETHERINITSCASEITLAYCOMPACTLY";
+
+    /** Return a fresh temporary directory. */
+    private static Path tempDir() throws Exception {
+        return Files.createTempDirectory("enigma");
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+        Path dir = tempDir();
+        Path config = dir.resolve("test.conf");
+        Path image = dir.resolve("test.img");
+        Files.writeString(config, CONFIG);
+        ConfigImage.compile(config.toString(), image.toString());
+        assertTrue(ConfigImage.isImage(image.toString()));
+        assertFalse(ConfigImage.isImage(config.toString()));
+
+        MachineSpec text = MachineSpec.parse(CONFIG);
+        MachineSpec loaded = ConfigImage.load(image.toString());
+        assertEquals(text.alphabetChars(), loaded.alphabetChars());
+        assertEquals(text.numRotors(), loaded.numRotors());
+        assertEquals(text.numPawls(), loaded.numPawls());
+        assertEquals(text.newSession(SETTINGS).convert(MSG),
+                     loaded.newSession(SETTINGS).convert(MSG));
+
+        Files.delete(config);
+        assertEquals(text.newSession(SETTINGS).convert(MSG),
+                     ConfigImage.load(image.toString())
+                     .newSession(SETTINGS).convert(MSG));
+        Files.delete(image);
+        Files.delete(dir);
+    }
+
+    @Test
+    public void staleTest() throws Exception {
+        Path dir = tempDir();
+        Path config = dir.resolve("test.conf");
+        Path image = dir.resolve("test.img");
+        Files.writeString(config, CONFIG);
+        ConfigImage.compile(config.toString(), image.toString());
+        Files.writeString(config, CONFIG.replace("MQ", "MR"));
+        try {
+            ConfigImage.load(image.toString());
+            fail("stale image accepted");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("out of date"));
+        }
+        Files.delete(config);
+        Files.delete(image);
+        Files.delete(dir);
+    }
+
+    @Test
+    public void corruptTest() throws Exception {
+        Path dir = tempDir();
+        Path config = dir.resolve("test.conf");
+        Path image = dir.resolve("test.img");
+        Files.writeString(config, CONFIG);
+        ConfigImage.compile(config.toString(), image.toString());
+        byte[] bytes = Files.readAllBytes(image);
+        bytes[bytes.length - 3] ^= 1;
+        Files.write(image, bytes);
+        try {
+            ConfigImage.load(image.toString());
+            fail("corrupt image accepted");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("corrupt"));
+        }
+        Files.write(image, Arrays.copyOf(bytes, 30));
+        try {
+            ConfigImage.load(image.toString());
+            fail("truncated image accepted");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("corrupt"));
+        }
+        Files.delete(config);
+        Files.delete(image);
+        Files.delete(dir);
+    }
+
+    @Test
+    public void machineSpecLoadTest() throws Exception {
+        Path dir = tempDir();
+        Path config = dir.resolve("test.conf");
+        Path image = dir.resolve("test.img");
+        Files.writeString(config, CONFIG);
+        ConfigImage.compile(config.toString(), image.toString());
+        String expected = MachineSpec.parse(CONFIG).newSession(SETTINGS)
+            .convert(MSG);
+        assertEquals(expected, MachineSpec.load(config.toString())
+                     .newSession(SETTINGS).convert(MSG));
+        assertEquals(expected, MachineSpec.load(image.toString())
+                     .newSession(SETTINGS).convert(MSG));
+        Files.delete(config);
+        Files.delete(image);
+        try {
+            MachineSpec.load(config.toString());
+            fail("missing configuration accepted");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("could not open"));
+        }
+        Files.delete(dir);
+    }
+
+}
@@ -0,0 +1,200 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext key search.  Given a machine configuration, a
+ *  ciphertext, and a crib (plaintext known to occur at a given offset
+ *  in the message), finds every key under which the ciphertext decrypts
+ *  to the crib at that offset.  A key is a choice of reflector and
+ *  rotors from the configuration's catalog, with the rightmost
+ *  numPawls() slots holding moving rotors and the others fixed ones,
+ *  together with the rotors' initial positions; the plugboard is given.
+ *  The work is divided among the threads of a pool, each converting with
+ *  its own machines, and each candidate key is abandoned at the first
+ *  letter that does not match the crib.
+ *  @author Jack Mango
+ */
+public final class CribSearch implements SearchProgress.Search {
+
+    /** A search of the keys of SPEC with plugboard PLUGBOARD (given as
+     *  cycles, as on a settings line) for those that decrypt CIPHERTEXT
+     *  to CRIB starting at OFFSET. */
+    public CribSearch(MachineSpec spec, String ciphertext, String crib,
+                      int offset, String plugboard) {
+        Alphabet alpha = spec.alphabet();
+        int[] cipher = ciphertext.codePoints().toArray();
+        int[] known = crib.codePoints().toArray();
+        if (offset < 0 || offset + known.length > cipher.length) {
+            throw error("Crib does not fit in the ciphertext");
+        }
+        if (known.length == 0) {
+            throw error("Empty crib");
+        }
+        _spec = spec;
+        _plugboard = plugboard;
+        _offset = offset;
+        _cipher = new int[known.length];
+        _crib = new int[known.length];
+        for (int i = 0; i < _crib.length; i++) {
+            _cipher[i] = alpha.toInt(cipher[offset + i]);
+            _crib[i] = alpha.toInt(known[i]);
+        }
+        _orders = spec.rotorOrders();
+        long positions = 1;
+        for (int i = 1; i < spec.numRotors(); i++) {
+            positions = Math.multiplyExact(positions, alpha.size());
+        }
+        _progress = new SearchProgress(
+            Math.multiplyExact(positions, (long) _orders.size()));
+    }
+
+    /** Run the search on POOL and return the settings lines of all the
+     *  keys found, in order of rotor order and then position. */
+    @Override
+    public List<String> run(ForkJoinPool pool) {
+        _progress.start();
+        ArrayList<Callable<List<String>>> units = new ArrayList<>();
+        for (String[] order : _orders) {
+            for (int first = 0; first < _spec.alphabet().size(); first++) {
+                final int f = first;
+                units.add(() -> search(order, f));
+            }
+        }
+        ArrayList<String> result = new ArrayList<>();
+        try {
+            for (Future<List<String>> unit : pool.invokeAll(units)) {
+                result.addAll(unit.get());
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("Search interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("Search failed: %s", excp.getCause());
+        } finally {
+            _progress.finish();
+        }
+        return result;
+    }
+
+    /** Return the number of candidate keys. */
+    public long total() {
+        return _progress.total();
+    }
+
+    /** Return the number of candidate keys tried so far. */
+    public long tested() {
+        return _progress.tested();
+    }
+
+    /** Return the number of keys found so far. */
+    public long found() {
+        return _found.sum();
+    }
+
+    /** Return the number of candidate keys tried per second, so far. */
+    public double throughput() {
+        return _progress.throughput();
+    }
+
+    @Override
+    public String status() {
+        return String.format("%s, %d found", _progress.status(), found());
+    }
+
+    /** Return the settings lines of the keys with rotors ORDER whose
+     *  leftmost non-reflector rotor starts at position FIRST. */
+    private List<String> search(String[] order, int first) {
+        Alphabet alpha = _spec.alphabet();
+        int n = alpha.size();
+        Machine mach = _spec.newMachine();
+        mach.insertRotors(order);
+        mach.setPlugboard(new Permutation(_plugboard, alpha));
+        int[] posn = new int[order.length - 1];
+        posn[0] = first;
+        ArrayList<String> result = new ArrayList<>();
+        long tested = 0;
+        while (true) {
+            mach.setRotors(posn);
+            if (_offset > 0) {
+                mach.advance(_offset);
+            }
+            int i;
+            for (i = 0; i < _crib.length; i++) {
+                if (mach.convert(_cipher[i]) != _crib[i]) {
+                    break;
+                }
+            }
+            if (i == _crib.length) {
+                result.add(Settings.line(order, posn, alpha, _plugboard));
+                _found.increment();
+            }
+            tested += 1;
+            if (tested == SearchProgress.BATCH) {
+                _progress.add(tested);
+                tested = 0;
+            }
+            int k = posn.length - 1;
+            while (k > 0 && posn[k] == n - 1) {
+                posn[k] = 0;
+                k -= 1;
+            }
+            if (k == 0) {
+                break;
+            }
+            posn[k] += 1;
+        }
+        _progress.add(tested);
+        return result;
+    }
+
+    /** Search for keys as directed by ARGS: the name of a configuration
+     *  file or image, the ciphertext, the crib, and optionally the
+     *  offset of the crib in the plaintext (default 0) and the plugboard
+     *  cycles (default none).  Prints the settings line of each key
+     *  found to the standard output and progress to the standard
+     *  error. */
+    public static void main(String... args) {
+        SearchProgress.main(args, 3, 5, "CribSearch CONFIG CIPHERTEXT CRIB "
+                            + "[OFFSET [PLUGBOARD]]",
+                            (spec, a) -> new CribSearch(
+                                spec, a[1], a[2],
+                                SearchProgress.intArg(a, 3, 0),
+                                a.length > 4 ? a[4] : ""));
+    }
+
+    /** The configuration searched. */
+    private final MachineSpec _spec;
+
+    /** Plugboard cycles. */
+    private final String _plugboard;
+
+    /** Offset of the crib in the message. */
+    private final int _offset;
+
+    /** Indices of the ciphertext letters under the crib. */
+    private final int[] _cipher;
+
+    /** Indices of the crib letters. */
+    private final int[] _crib;
+
+    /** Rotor orders to try. */
+    private final List<String[]> _orders;
+
+    /** Candidates tried, and how fast. */
+    private final SearchProgress _progress;
+
+    /** Keys found. */
+    private final LongAdder _found = new LongAdder();
+
+}
@@ -0,0 +1,58 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/** Tests of CribSearch.
+ *  @author Jack Mango
+ */
+public class CribSearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /** A small configuration with two reflectors, two fixed rotors and
+     *  three moving rotors. */
+    private static final String CONFIG =
+        navalConfig(4, 2, "I", "II", "III", "Beta", "Gamma", "B", "C");
+
+    /** The key used to encrypt. */
+    private static final String KEY = "* C Gamma III I QEV (AB) (YZ)";
+
+    /** The plaintext. */
+    private static final String PLAIN =
+        "WEATHERREPORTFORTODAYNOCHANGEINTHEPOSITIONOFTHEFLEET";
+
+    @Test
+    public void findsKey() {
+        MachineSpec spec = MachineSpec.parse(CONFIG);
+        String cipher = spec.newSession(KEY).convert(PLAIN);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        CribSearch search = new CribSearch(spec, cipher,
+                                           PLAIN.substring(7, 20), 7,
+                                           "(AB) (YZ)");
+        List<String> keys = search.run(pool);
+        pool.shutdown();
+        assertTrue(keys.contains(KEY));
+        assertEquals(2 * 2 * 3 * 2 * 26 * 26 * 26, search.total());
+        assertEquals(search.total(), search.tested());
+        assertEquals(keys.size(), search.found());
+        for (String key : keys) {
+            String plain = spec.newSession(key).convert(cipher);
+            assertEquals(PLAIN.substring(7, 20), plain.substring(7, 20));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void cribTooLong() {
+        new CribSearch(MachineSpec.parse(CONFIG), "ABC", "ABCD", 0, "");
+    }
+
+}
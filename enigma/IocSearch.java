@@ -0,0 +1,253 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only key search.  Tries every rotor order and starting
+ *  position that a configuration allows (see MachineSpec.rotorOrders)
+ *  with a given, possibly empty or partial, plugboard, decrypts a prefix
+ *  of the ciphertext with each, and keeps the candidates whose
+ *  decryptions have the highest index of coincidence: the probability
+ *  that two letters drawn from the text are the same, which is markedly
+ *  higher for natural language than for random text.  The work is
+ *  divided among the threads of a pool, each with its own machines,
+ *  letter counts and bounded heap of best candidates; scoring a
+ *  candidate allocates nothing.
+ *  @author Jack Mango
+ */
+public final class IocSearch implements SearchProgress.Search {
+
+    /** A search of the keys of SPEC with plugboard PLUGBOARD (given as
+     *  cycles, as on a settings line), scoring the decryptions of the
+     *  first PREFIX letters of CIPHERTEXT (or all of them, if there are
+     *  fewer) and keeping the best TOPK candidates. */
+    public IocSearch(MachineSpec spec, String ciphertext, int prefix,
+                     String plugboard, int topK) {
+        Alphabet alpha = spec.alphabet();
+        int[] cipher = ciphertext.codePoints().toArray();
+        int len = Math.min(prefix, cipher.length);
+        if (len < 2) {
+            throw error("Need at least two letters of ciphertext");
+        }
+        if (topK < 1) {
+            throw error("Must keep at least one candidate");
+        }
+        _spec = spec;
+        _plugboard = plugboard;
+        _topK = topK;
+        _cipher = new int[len];
+        for (int i = 0; i < len; i++) {
+            _cipher[i] = alpha.toInt(cipher[i]);
+        }
+        _orders = spec.rotorOrders();
+        long positions = 1;
+        for (int i = 1; i < spec.numRotors(); i++) {
+            positions = Math.multiplyExact(positions, alpha.size());
+        }
+        _positions = positions;
+        _progress = new SearchProgress(
+            Math.multiplyExact(positions, (long) _orders.size()));
+    }
+
+    /** A candidate key and the index of coincidence of its decryption. */
+    public static final class Candidate {
+
+        /** A candidate with settings line SETTINGS scoring IOC. */
+        Candidate(String settings, double ioc) {
+            _settings = settings;
+            _ioc = ioc;
+        }
+
+        /** Return my settings line. */
+        public String settings() {
+            return _settings;
+        }
+
+        /** Return the index of coincidence of my decryption. */
+        public double ioc() {
+            return _ioc;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.5f %s", _ioc, _settings);
+        }
+
+        /** My settings line. */
+        private final String _settings;
+
+        /** Index of coincidence of my decryption. */
+        private final double _ioc;
+    }
+
+    /** Run the search on POOL and return the best candidates, best
+     *  first.  Ties are broken in favor of the earlier key in rotor
+     *  order and position. */
+    @Override
+    public List<Candidate> run(ForkJoinPool pool) {
+        _progress.start();
+        ArrayList<Callable<TopK>> units = new ArrayList<>();
+        for (int order = 0; order < _orders.size(); order++) {
+            for (int first = 0; first < _spec.alphabet().size(); first++) {
+                final int o = order, f = first;
+                units.add(() -> search(o, f));
+            }
+        }
+        TopK best = new TopK(_topK);
+        try {
+            for (Future<TopK> unit : pool.invokeAll(units)) {
+                best.addAll(unit.get());
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("Search interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("Search failed: %s", excp.getCause());
+        } finally {
+            _progress.finish();
+        }
+        best.sort();
+        ArrayList<Candidate> result = new ArrayList<>();
+        double pairs = (double) _cipher.length * (_cipher.length - 1) / 2;
+        for (int i = 0; i < best.size(); i++) {
+            result.add(new Candidate(settingsLine(best.key(i)),
+                                     best.score(i) / pairs));
+        }
+        return result;
+    }
+
+    /** Return the number of candidate keys. */
+    public long total() {
+        return _progress.total();
+    }
+
+    /** Return the number of candidate keys tried so far. */
+    public long tested() {
+        return _progress.tested();
+    }
+
+    /** Return the number of candidate keys tried per second, so far. */
+    public double throughput() {
+        return _progress.throughput();
+    }
+
+    @Override
+    public String status() {
+        return _progress.status();
+    }
+
+    /** Return the best candidates with rotor order number ORDER whose
+     *  leftmost non-reflector rotor starts at position FIRST.  The score
+     *  of a candidate is the number of pairs of equal letters in its
+     *  decryption, and its key is ORDER * _positions plus its positions
+     *  read as a number in base alphabet size. */
+    private TopK search(int order, int first) {
+        Alphabet alpha = _spec.alphabet();
+        int n = alpha.size();
+        Machine mach = _spec.newMachine();
+        mach.insertRotors(_orders.get(order));
+        mach.setPlugboard(new Permutation(_plugboard, alpha));
+        int[] posn = new int[_spec.numRotors() - 1];
+        posn[0] = first;
+        long key = order * _positions + first * (_positions / n);
+        int[] counts = new int[n];
+        TopK best = new TopK(_topK);
+        long tested = 0;
+        while (true) {
+            mach.setRotors(posn);
+            Arrays.fill(counts, 0);
+            long score = 0;
+            for (int c : _cipher) {
+                int p = mach.convert(c);
+                score += counts[p];
+                counts[p] += 1;
+            }
+            best.offer(score, key);
+            tested += 1;
+            if (tested == SearchProgress.BATCH) {
+                _progress.add(tested);
+                tested = 0;
+            }
+            int k = posn.length - 1;
+            while (k > 0 && posn[k] == n - 1) {
+                posn[k] = 0;
+                k -= 1;
+            }
+            if (k == 0) {
+                break;
+            }
+            posn[k] += 1;
+            key += 1;
+        }
+        _progress.add(tested);
+        return best;
+    }
+
+    /** Return the settings line for the candidate numbered KEY (see
+     *  search). */
+    private String settingsLine(long key) {
+        int n = _spec.alphabet().size();
+        int[] posn = new int[_spec.numRotors() - 1];
+        long p = key % _positions;
+        for (int i = posn.length - 1; i >= 0; i--) {
+            posn[i] = (int) (p % n);
+            p /= n;
+        }
+        return Settings.line(_orders.get((int) (key / _positions)), posn,
+                             _spec.alphabet(), _plugboard);
+    }
+
+    /** Search for keys as directed by ARGS: the name of a configuration
+     *  file or image, the ciphertext, and optionally the number of
+     *  letters of it to decrypt (default DEFAULT_PREFIX), the number of
+     *  candidates to report (default DEFAULT_TOP) and the plugboard
+     *  cycles (default none).  Prints the best candidates to the
+     *  standard output and progress to the standard error. */
+    public static void main(String... args) {
+        SearchProgress.main(args, 2, 5, "IocSearch CONFIG CIPHERTEXT "
+                            + "[PREFIX [TOP [PLUGBOARD]]]",
+                            (spec, a) -> new IocSearch(
+                                spec, a[1],
+                                SearchProgress.intArg(a, 2, DEFAULT_PREFIX),
+                                a.length > 4 ? a[4] : "",
+                                SearchProgress.intArg(a, 3, DEFAULT_TOP)));
+    }
+
+    /** Default number of letters decrypted per candidate. */
+    static final int DEFAULT_PREFIX = 200;
+
+    /** Default number of candidates reported. */
+    static final int DEFAULT_TOP = 10;
+
+    /** The configuration searched. */
+    private final MachineSpec _spec;
+
+    /** Plugboard cycles. */
+    private final String _plugboard;
+
+    /** Number of candidates kept. */
+    private final int _topK;
+
+    /** Indices of the ciphertext letters decrypted. */
+    private final int[] _cipher;
+
+    /** Rotor orders to try. */
+    private final List<String[]> _orders;
+
+    /** Number of starting positions for each rotor order. */
+    private final long _positions;
+
+    /** Candidates tried, and how fast. */
+    private final SearchProgress _progress;
+
+}
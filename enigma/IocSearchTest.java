@@ -0,0 +1,78 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/** Tests of IocSearch and TopK.
+ *  @author Jack Mango
+ */
+public class IocSearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(120);
+
+    /** A small configuration: one reflector, one fixed rotor and three
+     *  moving rotors for two pawls. */
+    private static final String CONFIG =
+        navalConfig(4, 2, "I", "II", "III", "Beta", "B");
+
+    /** The key used to encrypt. */
+    private static final String KEY = "* B Beta II I KRT";
+
+    /** The plaintext. */
+    private static final String PLAIN =
+        "SHOULDYOUASKMEWHENCETHESESTORIESWHENCETHESELEGENDSANDTRADITIONS"
+        + "WITHTHEODORSOFTHEFORESTWITHTHEDEWANDDAMPOFMEADOWSWITHTHECURLING"
+        + "SMOKEOFWIGWAMSWITHTHERUSHINGOFGREATRIVERSWITHTHEIRFREQUENT"
+        + "REPETITIONSANDTHEIRWILDREVERBERATIONSASOFTHUNDERINTHEMOUNTAINS"
+        + "ISHOULDANSWERISHOULDTELLYOU";
+
+    @Test
+    public void findsKey() {
+        MachineSpec spec = MachineSpec.parse(CONFIG);
+        String cipher = spec.newSession(KEY).convert(PLAIN);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        IocSearch search = new IocSearch(spec, cipher, 250, "", 3);
+        List<IocSearch.Candidate> best = search.run(pool);
+        pool.shutdown();
+        assertEquals(3, best.size());
+        assertEquals(KEY, best.get(0).settings());
+        assertTrue(best.get(0).ioc() > 0.055);
+        assertTrue(best.get(0).ioc() >= best.get(1).ioc());
+        assertEquals(search.total(), search.tested());
+        assertEquals(6 * 26 * 26 * 26, search.total());
+    }
+
+    @Test
+    public void topKTest() {
+        Random random = new Random(13);
+        long[] scores = new long[1000];
+        TopK top = new TopK(10);
+        for (int i = 0; i < scores.length; i += 1) {
+            scores[i] = random.nextInt(200);
+            top.offer(scores[i], i);
+        }
+        top.sort();
+        assertEquals(10, top.size());
+        for (int k = 0; k < 10; k += 1) {
+            int better = 0;
+            for (int i = 0; i < scores.length; i += 1) {
+                if (scores[i] > top.score(k)
+                    || (scores[i] == top.score(k) && i < top.key(k))) {
+                    better += 1;
+                }
+            }
+            assertEquals(k, better);
+            assertEquals(scores[(int) top.key(k)], top.score(k));
+        }
+    }
+
+}
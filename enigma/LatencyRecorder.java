@@ -0,0 +1,102 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A lock-free histogram of latencies, in microseconds, from which
+ *  percentiles can be read while it is being updated.  Values below
+ *  SUB_BUCKETS are counted exactly; larger values are counted in
+ *  buckets that split each power of two into SUB_BUCKETS equal parts,
+ *  so that reported percentiles are within about 6% of the truth.
+ *  @author Jack Mango
+ */
+class LatencyRecorder {
+
+    /** Number of buckets per power of two. */
+    private static final int SUB_BUCKETS = 16;
+
+    /** Log base 2 of SUB_BUCKETS. */
+    private static final int SUB_BITS = 4;
+
+    /** Record a latency of MICROS microseconds (negative values count as
+     *  0). */
+    void record(long micros) {
+        long v = Math.max(0, micros);
+        _counts.incrementAndGet(bucket(v));
+        _max.accumulateAndGet(v, Math::max);
+    }
+
+    /** Return the number of latencies recorded. */
+    long count() {
+        long n = 0;
+        for (int i = 0; i < _counts.length(); i++) {
+            n += _counts.get(i);
+        }
+        return n;
+    }
+
+    /** Return the largest latency recorded, or 0 if there are none. */
+    long max() {
+        return _max.get();
+    }
+
+    /** Return an upper bound on the P-th percentile (0 < P <= 100) of the
+     *  latencies recorded, or 0 if there are none. */
+    long percentile(double p) {
+        long[] counts = new long[_counts.length()];
+        long n = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = _counts.get(i);
+            n += counts[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * p / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    /** Return a one-line summary of the recorded latencies. */
+    String summary() {
+        return String.format("requests %d, latency us: p50 %d p90 %d "
+                             + "p99 %d p99.9 %d max %d",
+                             count(), percentile(50), percentile(90),
+                             percentile(99), percentile(99.9), max());
+    }
+
+    /** Return the bucket holding value V >= 0. */
+    static int bucket(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int e = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (e - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (e - SUB_BITS + 1) + sub;
+    }
+
+    /** Return the largest value in bucket I. */
+    static long upperBound(int i) {
+        if (i < SUB_BUCKETS) {
+            return i;
+        }
+        int e = i / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = i % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + sub) << (e - SUB_BITS);
+        return lower + (1L << (e - SUB_BITS)) - 1;
+    }
+
+    /** Count of latencies in each bucket. */
+    private final AtomicLongArray _counts =
+        new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+
+    /** The largest latency recorded. */
+    private final AtomicLong _max = new AtomicLong();
+
+}
@@ -0,0 +1,257 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Converts many independent messages at once, one per machine, by
+ *  advancing all the machines in lockstep: the K-th characters of all
+ *  the messages are converted together, one lane per message.  The
+ *  rotor tables of every lane are compiled into flat arrays, one per
+ *  slot, so that sending a column of characters through a slot is a
+ *  single loop over the lanes doing a table lookup each.  Lanes run in
+ *  blocks of BLOCK, so as to keep the tables in use cached.  Messages may
+ *  have different lengths; a lane drops out when its message ends.
+ *  The results, and the final positions of the machines' rotors, are
+ *  exactly those of converting each message with its own machine.
+ *  @author Jack Mango
+ */
+class LockstepBatch {
+
+    /** A batch converting with MACHINES, one lane each, starting from
+     *  their current settings.  The machines must be set up, have the
+     *  same alphabet and have the same number of slots. */
+    LockstepBatch(Machine[] machines) {
+        if (machines.length == 0) {
+            throw error("Empty batch");
+        }
+        Alphabet alpha = machines[0].alphabet();
+        int numRotors = machines[0].numRotors();
+        _machines = machines;
+        _lanes = machines.length;
+        _size = alpha.size();
+        for (int l = 0; l < _lanes; l++) {
+            if (machines[l].alphabet() != alpha
+                || machines[l].numRotors() != numRotors) {
+                throw error("Machines in a batch must have the same "
+                            + "alphabet and slots");
+            }
+        }
+        _slots = numRotors + 1;
+        _forward = new int[_slots][];
+        _backward = new int[_slots][];
+        _notch = new boolean[_slots][];
+        _rotates = new boolean[_slots][];
+        _pos = new int[_slots][];
+        for (int s = 0; s < _slots; s++) {
+            compile(s);
+        }
+    }
+
+    /** Fill in the tables, notches, ratchets and positions of slot S in
+     *  every lane.  The forward and backward tables of a lane hold its
+     *  rotor's permutation and inverse twice over, so that a position
+     *  can be added to an index without wrapping it first. */
+    private void compile(int s) {
+        int n = _size;
+        _forward[s] = new int[_lanes * 2 * n];
+        _backward[s] = new int[_lanes * 2 * n];
+        _notch[s] = new boolean[_lanes * n];
+        _rotates[s] = new boolean[_lanes];
+        _pos[s] = new int[_lanes];
+        for (int l = 0; l < _lanes; l++) {
+            Rotor rotor = _machines[l].slot(s);
+            Permutation perm = rotor.permutation();
+            for (int p = 0; p < n; p++) {
+                int f = perm.permute(p), b = perm.invert(p);
+                _forward[s][l * 2 * n + p] = f;
+                _forward[s][l * 2 * n + p + n] = f;
+                _backward[s][l * 2 * n + p] = b;
+                _backward[s][l * 2 * n + p + n] = b;
+                _notch[s][l * n + p] = rotor.atNotch(p);
+            }
+            _rotates[s][l] = rotor.rotates();
+            _pos[s][l] = rotor.setting();
+        }
+    }
+
+    /** Convert the alphabet indices of MESSAGES[L] in place with the
+     *  machine of lane L, for each lane, and leave the machines' rotors
+     *  where converting the messages one at a time would.  A second call
+     *  continues from where the first left off, so the machines must
+     *  not be used otherwise in between.  If any message holds an index
+     *  outside the alphabet, throws without converting anything. */
+    void convert(int[][] messages) {
+        if (messages.length != _lanes) {
+            throw error("Need one message per machine");
+        }
+        for (int[] msg : messages) {
+            for (int c : msg) {
+                if (c < 0 || c >= _size) {
+                    throw error("Character index out of range!");
+                }
+            }
+        }
+        int[] letter = new int[BLOCK];
+        int[] lane = new int[BLOCK];
+        for (int lo = 0; lo < _lanes; lo += BLOCK) {
+            int[] order = byLength(messages, lo, Math.min(_lanes, lo + BLOCK));
+            int active = order.length;
+            for (int t = 0; active > 0; t++) {
+                while (active > 0 && messages[order[active - 1]].length <= t) {
+                    active -= 1;
+                }
+                for (int k = 0; k < active; k++) {
+                    lane[k] = order[k];
+                    step(order[k]);
+                    letter[k] = messages[order[k]][t];
+                }
+                route(letter, lane, active);
+                for (int k = 0; k < active; k++) {
+                    messages[order[k]][t] = letter[k];
+                }
+            }
+        }
+        Metrics metrics = Metrics.GLOBAL;
+        if (metrics != null) {
+            for (int[] msg : messages) {
+                metrics.converted(msg.length);
+            }
+        }
+        for (int l = 0; l < _lanes; l++) {
+            for (int s = 0; s < _slots; s++) {
+                if (_rotates[s][l]) {
+                    _machines[l].slot(s).set(_pos[s][l]);
+                }
+            }
+            _machines[l].rotorsMoved();
+        }
+    }
+
+    /** Return the conversions of MESSAGES[L] by the machine of lane L,
+     *  for each lane, as for convert on alphabet indices. */
+    String[] convert(String[] messages) {
+        if (messages.length != _lanes) {
+            throw error("Need one message per machine");
+        }
+        Alphabet alpha = _machines[0].alphabet();
+        int[][] indices = new int[_lanes][];
+        for (int l = 0; l < _lanes; l++) {
+            indices[l] = messages[l].codePoints().toArray();
+            for (int t = 0; t < indices[l].length; t++) {
+                int index = alpha.toIndex(indices[l][t]);
+                if (index == -1) {
+                    throw error(String.format("Unknown character: %c",
+                                              indices[l][t]));
+                }
+                indices[l][t] = index;
+            }
+        }
+        convert(indices);
+        String[] result = new String[_lanes];
+        for (int l = 0; l < _lanes; l++) {
+            StringBuilder out = new StringBuilder(indices[l].length);
+            for (int index : indices[l]) {
+                out.appendCodePoint(alpha.toCodePoint(index));
+            }
+            result[l] = out.toString();
+        }
+        return result;
+    }
+
+    /** Return lanes LO .. HI-1 ordered by decreasing length of their
+     *  MESSAGES. */
+    private static int[] byLength(int[][] messages, int lo, int hi) {
+        Integer[] lanes = new Integer[hi - lo];
+        for (int l = lo; l < hi; l++) {
+            lanes[l - lo] = l;
+        }
+        Arrays.sort(lanes, (a, b) ->
+            Integer.compare(messages[b].length, messages[a].length));
+        int[] result = new int[lanes.length];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = lanes[k];
+        }
+        return result;
+    }
+
+    /** Advance the rotors of lane L as for a single key press (see
+     *  Machine.step). */
+    private void step(int l) {
+        int n = _size;
+        for (int i = 0; i < _slots - 1; i++) {
+            if (_notch[i + 1][l * n + _pos[i + 1][l]]) {
+                advance(i, l);
+                if (i < _slots - 3 && _rotates[i][l]) {
+                    advance(i + 1, l);
+                    i += 1;
+                }
+            }
+        }
+        advance(_slots - 2, l);
+    }
+
+    /** Advance the rotor in slot S of lane L, if it moves. */
+    private void advance(int s, int l) {
+        if (_rotates[s][l]) {
+            int p = _pos[s][l] + 1;
+            _pos[s][l] = p == _size ? 0 : p;
+        }
+    }
+
+    /** Send LETTER[K] through the plugboard, rotors and reflector of
+     *  lane LANE[K] and back again, for K < ACTIVE, storing the
+     *  results in LETTER. */
+    private void route(int[] letter, int[] lane, int active) {
+        for (int s = _slots - 1; s >= 0; s--) {
+            pass(_forward[s], _pos[s], letter, lane, active);
+        }
+        for (int s = 1; s < _slots; s++) {
+            pass(_backward[s], _pos[s], letter, lane, active);
+        }
+    }
+
+    /** Replace LETTER[K] by its image under the lane LANE[K] section of
+     *  TABLE with that lane at position POS[LANE[K]], for K < ACTIVE. */
+    private void pass(int[] table, int[] pos, int[] letter, int[] lane,
+                      int active) {
+        int n = _size;
+        for (int k = 0; k < active; k++) {
+            int l = lane[k], p = pos[l];
+            int to = table[l * 2 * n + letter[k] + p] - p;
+            letter[k] = to < 0 ? to + n : to;
+        }
+    }
+
+    /** Number of lanes converted together.  Lanes are converted in
+     *  blocks of this many, so that the tables in use at once stay
+     *  small enough to be cached. */
+    static final int BLOCK = 64;
+
+    /** Machine of each lane. */
+    private final Machine[] _machines;
+
+    /** Number of lanes. */
+    private final int _lanes;
+
+    /** Number of slots, including the plugboard. */
+    private final int _slots;
+
+    /** Alphabet size. */
+    private final int _size;
+
+    /** _forward[S] and _backward[S] hold the doubled permutation and
+     *  inverse tables of slot S, 2 * _size entries per lane. */
+    private final int[][] _forward, _backward;
+
+    /** _notch[S][L * _size + P] is true iff the rotor in slot S of lane
+     *  L is at a notch at position P. */
+    private final boolean[][] _notch;
+
+    /** _rotates[S][L] is true iff the rotor in slot S of lane L moves. */
+    private final boolean[][] _rotates;
+
+    /** _pos[S][L] is the position of the rotor in slot S of lane L. */
+    private final int[][] _pos;
+
+}
@@ -0,0 +1,100 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.util.List;
+import java.util.Random;
+
+/** Tests of LockstepBatch.
+ *  @author Jack Mango
+ */
+public class LockstepBatchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** A naval configuration with notches placed to cause frequent
+     *  double steps. */
+    private static final String CONFIG =
+        NAVAL_CONFIG + " VI MAEIMQUY " + NAVALA.get("VI") + "\n";
+
+    /** Plugboards used at random. */
+    private static final String[] PLUGBOARDS = {
+        "", "(HQ) (EX)", "(AB) (CD) (EF) (GH) (IJ) (KL)", "(AZ)"
+    };
+
+    /** Return a random settings line for SPEC, using RAND. */
+    private static String settings(MachineSpec spec, Random rand) {
+        List<String[]> orders = spec.rotorOrders();
+        int[] posn = new int[spec.numRotors() - 1];
+        for (int i = 0; i < posn.length; i += 1) {
+            posn[i] = rand.nextInt(spec.alphabet().size());
+        }
+        return Settings.line(orders.get(rand.nextInt(orders.size())), posn,
+                             spec.alphabet(),
+                             PLUGBOARDS[rand.nextInt(PLUGBOARDS.length)]);
+    }
+
+    /** Return a random message of LEN letters, using RAND. */
+    private static String message(int len, Random rand) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < len; i += 1) {
+            result.append((char) ('A' + rand.nextInt(26)));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void matchesSequentialTest() {
+        MachineSpec spec = MachineSpec.parse(CONFIG);
+        Random rand = new Random(17);
+        int lanes = 200;
+        Machine[] batch = new Machine[lanes], single = new Machine[lanes];
+        String[] msgs = new String[lanes];
+        for (int l = 0; l < lanes; l += 1) {
+            String line = settings(spec, rand);
+            batch[l] = spec.newMachine();
+            spec.settings(line).applyTo(batch[l]);
+            single[l] = spec.newMachine();
+            spec.settings(line).applyTo(single[l]);
+            msgs[l] = message(l % 7 == 0 ? 0 : rand.nextInt(2000), rand);
+        }
+        LockstepBatch engine = new LockstepBatch(batch);
+        for (int round = 0; round < 2; round += 1) {
+            String[] results = engine.convert(msgs);
+            for (int l = 0; l < lanes; l += 1) {
+                assertEquals("lane " + l, single[l].convert(msgs[l]),
+                             results[l]);
+                assertEquals("lane " + l, single[l].rotorSettings(),
+                             batch[l].rotorSettings());
+            }
+        }
+    }
+
+    @Test
+    public void badInputTest() {
+        MachineSpec spec = MachineSpec.parse(CONFIG);
+        Machine mach = spec.newMachine();
+        spec.settings("* B Beta III IV I AXLE").applyTo(mach);
+        LockstepBatch engine = new LockstepBatch(new Machine[] { mach });
+        try {
+            engine.convert(new String[] { "HELLOworld" });
+            fail("converted a bad message");
+        } catch (EnigmaException excp) {
+            assertEquals("AXLE", mach.rotorSettings());
+        }
+        try {
+            new LockstepBatch(new Machine[] {
+                mach, MachineSpec.parse(CONFIG).newMachine() });
+            fail("mixed alphabets accepted");
+        } catch (EnigmaException excp) {
+            return;
+        }
+    }
+
+}
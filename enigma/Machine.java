@@ -2,9 +2,15 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
+import java.nio.CharBuffer;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Hashtable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /** Class that represents a complete enigma machine.
  *  @author Jack Mango
@@ -22,15 +28,59 @@ class Machine {
         _alphabet = alpha;
         _numRotors = numRotors;
         _numPawls = pawls;
-        _allRotors = new Hashtable<String, Rotor>();
+        _allRotors = new Hashtable<String, Integer>();
+        _catalog = allRotors.toArray(new Rotor[0]);
         _slots = new Rotor[numRotors + 1];
-        for (Rotor rotor : allRotors) {
-            if (_allRotors.contains(rotor)) {
+        for (int id = 0; id < _catalog.length; id++) {
+            Rotor rotor = _catalog[id];
+            Integer other = _allRotors.get(rotor.name());
+            if (other != null && _catalog[other] == rotor) {
                 throw error("Duplicate rotors not allowed!");
             } else {
-                _allRotors.put(rotor.name(), rotor);
+                _allRotors.put(rotor.name(), id);
+            }
+        }
+        _copies = new Rotor[_catalog.length];
+        _ids = new int[numRotors];
+        Arrays.fill(_ids, -1);
+        _noPlugboard = new FixedRotor("Plugboard",
+                                      new Permutation("", alpha));
+        _core = new int[alpha.size()];
+        _plugIn = new int[alpha.size()];
+        _plugOut = new int[alpha.size()];
+    }
+
+    /** A machine with the same rotors, settings and plugboard as
+     *  MACH, whose rotors move independently of MACH's.  It does not
+     *  use a state cache. */
+    private Machine(Machine mach) {
+        _alphabet = mach._alphabet;
+        _numRotors = mach._numRotors;
+        _numPawls = mach._numPawls;
+        _allRotors = mach._allRotors;
+        _catalog = mach._catalog;
+        _copies = new Rotor[_catalog.length];
+        _ids = mach._ids.clone();
+        _slots = new Rotor[mach._slots.length];
+        for (int i = 0; i < _slots.length; i++) {
+            _slots[i] = mach._slots[i].copy();
+            if (i < _ids.length && _ids[i] >= 0) {
+                _copies[_ids[i]] = _slots[i];
             }
         }
+        _noPlugboard = mach._noPlugboard;
+        _core = mach._core.clone();
+        _plugIn = mach._plugIn.clone();
+        _plugOut = mach._plugOut.clone();
+        _first = mach._first;
+        _back = mach._back;
+        _coreValid = mach._coreValid;
+        _plugValid = mach._plugValid;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
     }
 
     /** Return the number of rotor slots I have. */
@@ -43,22 +93,57 @@ class Machine {
         return _numPawls;
     }
 
-    /** Set my rotor slots to the rotors named ROTORS from my set of
-     *  available rotors (ROTORS[0] names the reflector).
+    /** Set my rotor slots to copies of the rotors named ROTORS from my set
+     *  of available rotors (ROTORS[0] names the reflector), so that
+     *  machines sharing a set of rotors do not move each other's.
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
-        if (rotors.length > _slots.length) {
+        checkRotors(rotors);
+        _cacheFixed = null;
+        _notchedValid = false;
+        if (_slots[_slots.length - 1] != _noPlugboard) {
+            _slots[_slots.length - 1] = _noPlugboard;
+            _plugValid = false;
+        }
+        for (int i = 0; i < rotors.length; i++) {
+            int id = _allRotors.get(rotors[i]);
+            if (_ids[i] != id) {
+                _ids[i] = id;
+                _slots[i] = working(id);
+                slotChanged(i);
+            }
+            if (_slots[i].setting() != 0) {
+                _slots[i].set(0);
+                slotChanged(i);
+            }
+        }
+    }
+
+    /** Return my own copy of the available rotor with catalog index ID,
+     *  making it on first use.  A machine never holds the same rotor in
+     *  two slots, so one copy of each suffices. */
+    private Rotor working(int id) {
+        if (_copies[id] == null) {
+            _copies[id] = _catalog[id].copy();
+        }
+        return _copies[id];
+    }
+
+    /** Check that insertRotors would accept ROTORS, throwing the error
+     *  it would report if not.  Does not change me. */
+    void checkRotors(String[] rotors) {
+        if (rotors.length > numRotors()) {
             throw error("Too many rotors provided!");
         }
         int numMoving = 0;
-        _slots[_slots.length - 1] = new FixedRotor("Plugboard",
-                new Permutation("", _alphabet));
+        Rotor prev = null;
         ArrayList<String> dups = new ArrayList<String>();
         for (int i = 0; i < rotors.length; i++) {
-            Rotor rotor = _allRotors.get(rotors[i]);
-            if (rotor == null) {
+            Integer id = _allRotors.get(rotors[i]);
+            if (id == null) {
                 throw error("Rotor doesn't exist!");
             }
+            Rotor rotor = _catalog[id];
             if (rotor.rotates()) {
                 numMoving += 1;
             }
@@ -66,14 +151,13 @@ class Machine {
                 throw error("Too many moving rotors!");
             } else if (rotor.reflecting() && i != 0) {
                 throw error("Only reflectors can be in the first slot!");
-            } else if (i > 0 && _slots[i - 1].rotates() && !rotor.rotates()) {
+            } else if (prev != null && prev.rotates() && !rotor.rotates()) {
                 throw error("Fixed rotors can't go after rotating rotors!");
             } else if (dups.indexOf(rotor.name()) != -1) {
                 throw error("Duplicate rotors!");
-            } else {
-                _slots[i] = _allRotors.get(rotors[i]);
-                dups.add(_slots[i].name());
             }
+            dups.add(rotor.name());
+            prev = rotor;
         }
     }
 
@@ -81,76 +165,635 @@ class Machine {
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
-        if (setting.length() != numRotors() - 1) {
+        setRotors(settingIndices(setting));
+    }
+
+    /** Return the rotor settings SETTING, a string as for
+     *  setRotors(String), as alphabet indices in the form accepted by
+     *  setRotors(int[]), throwing the error setRotors would report if
+     *  it is invalid.  Does not change me. */
+    int[] settingIndices(String setting) {
+        int[] posn = setting.codePoints().toArray();
+        if (posn.length != numRotors() - 1) {
+            throw error("Invalid settings provided!");
+        }
+        for (int i = 0; i < posn.length; i++) {
+            posn[i] = _alphabet.toIndex(posn[i]);
+            if (posn[i] == -1) {
+                throw error("Setting not in alphabet!");
+            }
+        }
+        return posn;
+    }
+
+    /** Set my rotors to the positions SETTING, an array of numRotors()-1
+     *  alphabet indices, leftmost (not counting the reflector) first. */
+    void setRotors(int[] setting) {
+        if (setting.length != numRotors() - 1) {
             throw error("Invalid settings provided!");
         }
-        for (int i = 0; i < setting.length(); i++) {
-            if (!_alphabet.contains(setting.charAt(i))) {
+        for (int i = 0; i < setting.length; i++) {
+            if (setting[i] < 0 || setting[i] >= _alphabet.size()) {
                 throw error("Setting not in alphabet!");
             }
-            _slots[i + 1].set(setting.charAt(i));
+            if (_slots[i + 1].setting() != setting[i]) {
+                _slots[i + 1].set(setting[i]);
+                slotChanged(i + 1);
+            }
+            _notchedValid = false;
         }
     }
 
+    /** Return my current rotor settings, in the form accepted by
+     *  setRotors. */
+    String rotorSettings() {
+        checkSetup();
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i < numRotors(); i++) {
+            result.appendCodePoint(_alphabet.toCodePoint(_slots[i].setting()));
+        }
+        return result.toString();
+    }
+
+    /** Return a record of my current rotors, their settings and my
+     *  plugboard, which restore can later return me to. */
+    MachineState snapshot() {
+        checkSetup();
+        int[] settings = new int[_ids.length];
+        for (int i = 0; i < settings.length; i++) {
+            settings[i] = _slots[i].setting();
+        }
+        Rotor plugboard = _slots[_slots.length - 1];
+        int[] plugs = new int[_alphabet.size()];
+        for (int p = 0; p < plugs.length; p++) {
+            plugs[p] = plugboard.convertForward(p);
+        }
+        return new MachineState(this, _ids.clone(), settings, plugs);
+    }
+
+    /** Return me to STATE, which must be a snapshot of me. */
+    void restore(MachineState state) {
+        if (state.owner() != this) {
+            throw error("State belongs to another machine");
+        }
+        for (int i = 0; i < _ids.length; i++) {
+            if (_ids[i] != state.rotor(i)) {
+                _ids[i] = state.rotor(i);
+                _slots[i] = working(_ids[i]);
+                _cacheFixed = null;
+                slotChanged(i);
+            }
+            if (_slots[i].setting() != state.setting(i)) {
+                _slots[i].set(state.setting(i));
+                slotChanged(i);
+            }
+        }
+        Rotor plugboard = _slots[_slots.length - 1];
+        for (int p = 0; p < _alphabet.size(); p++) {
+            if (plugboard.convertForward(p) != state.plugboard(p)) {
+                setPlugboard(plugboard(state));
+                break;
+            }
+        }
+        _notchedValid = false;
+    }
+
+    /** Return the plugboard recorded in STATE. */
+    private Permutation plugboard(MachineState state) {
+        int[] forward = new int[_alphabet.size()];
+        int[] inverse = new int[forward.length];
+        for (int p = 0; p < forward.length; p++) {
+            forward[p] = state.plugboard(p);
+            inverse[forward[p]] = p;
+        }
+        return new Permutation(forward, inverse, _alphabet);
+    }
+
+    /** Return the rotor in slot K, counting the reflector as slot 0 and
+     *  the plugboard as slot numRotors(), for LockstepBatch, which
+     *  moves my rotors directly (see rotorsMoved). */
+    Rotor slot(int k) {
+        checkSetup();
+        return _slots[k];
+    }
+
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
+        _cacheFixed = null;
+        _notchedValid = false;
+        _plugValid = false;
         _slots[_slots.length - 1] = new FixedRotor("Plugboard", plugboard);
     }
 
+    /** Use a compiled engine that caches the full substitution for each
+     *  visited rotor-position state, using at most about MAXBYTES bytes
+     *  for the tables.  A MAXBYTES of 0 turns the compiled engine off. */
+    void setStateCache(long maxBytes) {
+        _cacheBytes = maxBytes;
+        _cache = null;
+        _cacheFixed = null;
+    }
+
+    /** Return the state cache currently in use, or null if there is
+     *  none. */
+    StateCache stateCache() {
+        return _cache;
+    }
+
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
-        int letter = c;
-        for (int i = 0; i < _slots.length - 1; i++) {
-            if (_slots[i + 1].atNotch()) {
-                _slots[i].advance();
+        step();
+        if (_cacheBytes > 0) {
+            long key = stateKey();
+            if (key >= 0) {
+                int[] table = _cache.get(key);
+                if (table == null) {
+                    table = _cache.claim(key);
+                    if (table == null) {
+                        return route(c);
+                    }
+                    for (int i = 0; i < table.length; i++) {
+                        table[i] = route(i);
+                    }
+                }
+                return table[c];
+            }
+        }
+        return route(c);
+    }
+
+    /** Advance my rotors to where STEPS calls of convert would leave
+     *  them, without converting anything.  Takes time that does not
+     *  grow with STEPS beyond the number of distinct rotor
+     *  configurations met (see StepSchedule). */
+    void advance(long steps) {
+        checkSetup();
+        if (steps < 0) {
+            throw error("Cannot step backwards");
+        }
+        int last = _slots.length - 2;
+        int first = last + 1;
+        while (first > 0 && _slots[first - 1].rotates()) {
+            first -= 1;
+        }
+        boolean slow = steps <= _alphabet.size();
+        for (int i = 0; i < first && !slow; i++) {
+            slow = _slots[i].rotates();
+        }
+        if (slow) {
+            for (long s = 0; s < steps; s++) {
+                step();
+            }
+            return;
+        }
+        if (first <= last) {
+            Rotor[] rotors = new Rotor[last + 1];
+            System.arraycopy(_slots, 0, rotors, 0, rotors.length);
+            new StepSchedule(rotors, first, _alphabet.size()).advance(steps);
+            _notchedValid = false;
+        }
+    }
+
+    /** Record that my rotors may have been moved other than by my own
+     *  methods, as LockstepBatch does. */
+    void rotorsMoved() {
+        _notchedValid = false;
+    }
+
+    /** Advance the rotors as for a single key press.  Scanning the
+     *  slots from the left, each rotor whose right neighbor is at a
+     *  notch advances, and if it is a moving rotor (other than the
+     *  second from the right), so does that neighbor, whose own notch
+     *  is then not considered; finally the rightmost rotor advances.
+     *  The notches are those before the key press, since a rotor is
+     *  only advanced after the notches to its right have been read.
+     *  Only the slots in _notched are visited, so that a key press
+     *  takes time proportional to the number of rotors at a notch,
+     *  not to the number of slots. */
+    private void step() {
+        if (!_notchedValid) {
+            _notched.clear();
+            for (int k = 1; k < _slots.length; k++) {
+                if (_slots[k].atNotch()) {
+                    _notched.set(k);
+                }
+            }
+            _notchedValid = true;
+        }
+        int skip = -1;
+        for (int k = _notched.nextSetBit(1); k >= 0;
+             k = _notched.nextSetBit(k + 1)) {
+            int i = k - 1;
+            if (i != skip) {
+                move(i);
                 if (i < _slots.length - 3 && _slots[i].rotates()) {
-                    _slots[i + 1].advance();
-                    i += 1;
+                    move(k);
+                    skip = k;
                 }
             }
         }
-        _slots[_slots.length - 2].advance();
-        for (int i = _slots.length - 1; i >= 0; i--) {
+        move(_slots.length - 2);
+    }
+
+    /** Advance the rotor in slot K, keeping _notched up to date. */
+    private void move(int k) {
+        Rotor rotor = _slots[k];
+        rotor.advance();
+        _notched.set(k, k > 0 && rotor.atNotch());
+    }
+
+    /** Return the result of sending C through the plugboard, rotors and
+     *  reflector and back again, without moving anything.  Only the
+     *  moving rotors are visited one at a time; the rest of the path
+     *  is taken from the tables built by fold. */
+    private int route(int c) {
+        if (!_coreValid || !_plugValid) {
+            fold();
+        }
+        int letter = _plugIn[c];
+        for (int i = _slots.length - 2; i >= _first; i--) {
             letter = _slots[i].convertForward(letter);
         }
-        for (int i = 1; i < _slots.length; i++) {
+        letter = _core[letter];
+        for (int i = _back; i < _slots.length - 1; i++) {
             letter = _slots[i].convertBackward(letter);
         }
-        return letter;
+        return _plugOut[letter];
+    }
+
+    /** Precompute the parts of route that key presses do not change,
+     *  filling in whichever of _core and the plugboard tables is out of
+     *  date.  The reflector and the non-moving rotors to the left of the
+     *  first moving one, at their current settings, become _core, which
+     *  takes a letter leaving the leftmost moving rotor to the letter
+     *  re-entering it.  The plugboard becomes _plugIn and its inverse
+     *  _plugOut. */
+    private void fold() {
+        int n = _alphabet.size();
+        if (!_coreValid) {
+            int last = _slots.length - 1;
+            int first = 0;
+            while (first < last && !_slots[first].rotates()) {
+                first += 1;
+            }
+            for (int c = 0; c < n; c++) {
+                int letter = c;
+                for (int i = first - 1; i >= 0; i--) {
+                    letter = _slots[i].convertForward(letter);
+                }
+                for (int i = 1; i < first; i++) {
+                    letter = _slots[i].convertBackward(letter);
+                }
+                _core[c] = letter;
+            }
+            _first = first;
+            _back = Math.max(first, 1);
+            _coreValid = true;
+        }
+        if (!_plugValid) {
+            Rotor plugboard = _slots[_slots.length - 1];
+            for (int c = 0; c < n; c++) {
+                _plugIn[c] = plugboard.convertForward(c);
+                _plugOut[c] = plugboard.convertBackward(c);
+            }
+            _plugValid = true;
+        }
+    }
+
+    /** Record that the rotor in slot K, or its setting, has changed,
+     *  making _core out of date if the slot was or now is part of the
+     *  stationary section that _core covers.  A moving rotor replacing
+     *  or moving within the moving section leaves _core as it is. */
+    private void slotChanged(int k) {
+        if (k < _first || !_slots[k].rotates()) {
+            _coreValid = false;
+        }
+    }
+
+    /** Return a key identifying the positions of my moving rotors, making
+     *  sure _cache holds tables for the current positions of my fixed
+     *  rotors.  Returns -1 if the positions cannot be cached. */
+    private long stateKey() {
+        if (_cache == null || !fixedUnchanged()) {
+            long states = 1;
+            for (int i = 1; i < _slots.length - 1; i++) {
+                if (_slots[i].rotates()) {
+                    if (states > Long.MAX_VALUE / _alphabet.size()) {
+                        return -1;
+                    }
+                    states *= _alphabet.size();
+                }
+            }
+            if (_cache == null) {
+                _cache = new StateCache(_alphabet.size(), states,
+                                        _cacheBytes);
+            } else {
+                _cache.clear();
+            }
+            _cacheFixed = new int[_slots.length];
+            for (int i = 1; i < _slots.length - 1; i++) {
+                _cacheFixed[i] = _slots[i].setting();
+            }
+        }
+        long key = 0;
+        for (int i = 1; i < _slots.length - 1; i++) {
+            if (_slots[i].rotates()) {
+                key = key * _alphabet.size() + _slots[i].setting();
+            }
+        }
+        return key;
+    }
+
+    /** Return true iff my non-moving rotors are where they were when
+     *  the tables in _cache were built. */
+    private boolean fixedUnchanged() {
+        if (_cacheFixed == null) {
+            return false;
+        }
+        for (int i = 1; i < _slots.length - 1; i++) {
+            if (!_slots[i].rotates()
+                && _cacheFixed[i] != _slots[i].setting()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String msgOut = "";
-        if (_slots[0] == null) {
-            throw error("Incomplete setup");
+        if (_alphabet.isBmp()) {
+            char[] buf = msg.toCharArray();
+            convert(buf, 0, buf.length, buf, 0);
+            return new String(buf);
         }
-        for (int i = 0; i < msg.length(); i++) {
-            char letter = msg.charAt(i);
-            if (!_alphabet.contains(letter)) {
+        checkSetup();
+        int[] buf = msg.codePoints().toArray();
+        for (int i = 0; i < buf.length; i++) {
+            int index = _alphabet.toIndex(buf[i]);
+            if (index == -1) {
+                throw error(String.format("Unknown character: %c", buf[i]));
+            }
+            buf[i] = _alphabet.toCodePoint(convert(index));
+        }
+        converted(buf.length);
+        return new String(buf, 0, buf.length);
+    }
+
+    /** Convert the LEN characters of IN starting at OFF, storing the
+     *  results in OUT starting at OUTOFF and updating the state of the
+     *  rotors accordingly.  IN and OUT may be the same array.  My
+     *  alphabet must be entirely in the Basic Multilingual Plane (see
+     *  Alphabet.isBmp). */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        checkSetup();
+        for (int i = 0; i < len; i++) {
+            char letter = in[off + i];
+            int index = _alphabet.toIndex(letter);
+            if (index == -1) {
                 throw error(String.format("Unknown character: %c", letter));
             }
-            msgOut += _alphabet.toChar(convert(_alphabet.toInt(letter)));
+            out[outOff + i] = _alphabet.toChar(convert(index));
         }
-        return msgOut;
+        converted(len);
     }
 
+    /** Convert the LEN alphabet indices of IN starting at OFF, storing
+     *  the resulting indices in OUT starting at OUTOFF and updating the
+     *  state of the rotors accordingly.  IN and OUT may be the same
+     *  array. */
+    void convert(int[] in, int off, int len, int[] out, int outOff) {
+        checkSetup();
+        for (int i = 0; i < len; i++) {
+            int index = in[off + i];
+            if (index < 0 || index >= _alphabet.size()) {
+                throw error("Character index out of range!");
+            }
+            out[outOff + i] = convert(index);
+        }
+        converted(len);
+    }
+
+    /** Convert the remaining characters of IN into OUT, advancing both
+     *  buffers.  OUT must have at least IN.remaining() characters
+     *  remaining. */
+    void convert(CharBuffer in, CharBuffer out) {
+        if (out.remaining() < in.remaining()) {
+            throw error("Output buffer too small");
+        }
+        if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            int len = in.remaining();
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+            return;
+        }
+        checkSetup();
+        int len = in.remaining();
+        while (in.hasRemaining()) {
+            char letter = in.get();
+            int index = _alphabet.toIndex(letter);
+            if (index == -1) {
+                throw error(String.format("Unknown character: %c", letter));
+            }
+            out.put(_alphabet.toChar(convert(index)));
+        }
+        converted(len);
+    }
+
+    /** Convert the LEN characters of IN starting at OFF into OUT starting
+     *  at OUTOFF exactly as convert(IN, OFF, LEN, OUT, OUTOFF) would,
+     *  but dividing the message among the threads of POOL.  Each piece
+     *  is converted by a copy of me advanced to the piece's offset.  The
+     *  input and output ranges must be the same or not overlap. */
+    void convertParallel(char[] in, int off, int len, char[] out, int outOff,
+                         ForkJoinPool pool) {
+        checkSetup();
+        int valid = 0;
+        while (valid < len && _alphabet.contains(in[off + valid])) {
+            valid += 1;
+        }
+        pool.invoke(new ParallelConvert(this, 0, valid,
+                                        grain(valid, pool), (m, lo, hi) ->
+            m.convert(in, off + lo, hi - lo, out, outOff + lo)));
+        advance(valid);
+        if (valid < len) {
+            throw error(String.format("Unknown character: %c",
+                                      in[off + valid]));
+        }
+    }
+
+    /** Convert the LEN alphabet indices of IN starting at OFF into OUT
+     *  starting at OUTOFF exactly as convert(IN, OFF, LEN, OUT, OUTOFF)
+     *  would, but dividing the message among the threads of POOL, as for
+     *  convertParallel on characters. */
+    void convertParallel(int[] in, int off, int len, int[] out, int outOff,
+                         ForkJoinPool pool) {
+        checkSetup();
+        int valid = 0;
+        while (valid < len && in[off + valid] >= 0
+               && in[off + valid] < _alphabet.size()) {
+            valid += 1;
+        }
+        pool.invoke(new ParallelConvert(this, 0, valid,
+                                        grain(valid, pool), (m, lo, hi) ->
+            m.convert(in, off + lo, hi - lo, out, outOff + lo)));
+        advance(valid);
+        if (valid < len) {
+            throw error("Character index out of range!");
+        }
+    }
+
+    /** Return the size of the pieces into which convertParallel divides
+     *  a message of LEN characters for POOL. */
+    private static int grain(int len, ForkJoinPool pool) {
+        return Math.max(PARALLEL_GRAIN,
+                        len / (4 * pool.getParallelism()) + 1);
+    }
+
+    /** Converts a piece of a message, given as the range of offsets
+     *  [LO, HI) from its start, using a machine that is at the settings
+     *  for offset LO. */
+    private interface Piece {
+        /** Convert offsets [LO, HI) with MACH. */
+        void convert(Machine mach, int lo, int hi);
+    }
+
+    /** A task converting offsets [LO, HI) of a message that starts with
+     *  the settings of a given machine, splitting it into pieces of at
+     *  most a given size. */
+    private static class ParallelConvert extends RecursiveAction {
+        /** Serialization version (ForkJoinTask is Serializable). */
+        private static final long serialVersionUID = 1L;
+
+        /** A task converting offsets [LO, HI) of a message starting at
+         *  MACH's settings with PIECE, in pieces of at most GRAIN. */
+        ParallelConvert(Machine mach, int lo, int hi, int grain,
+                        Piece piece) {
+            _mach = mach;
+            _lo = lo;
+            _hi = hi;
+            _grain = grain;
+            _piece = piece;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo <= _grain) {
+                Machine copy = new Machine(_mach);
+                copy.advance(_lo);
+                _piece.convert(copy, _lo, _hi);
+            } else {
+                int mid = _lo + (_hi - _lo) / 2;
+                invokeAll(new ParallelConvert(_mach, _lo, mid, _grain, _piece),
+                          new ParallelConvert(_mach, mid, _hi, _grain,
+                                              _piece));
+            }
+        }
+
+        /** Machine at the settings for the start of the message. */
+        private final Machine _mach;
+
+        /** Range of offsets to convert. */
+        private final int _lo, _hi;
+
+        /** Largest piece converted without splitting. */
+        private final int _grain;
+
+        /** Conversion of each piece. */
+        private final Piece _piece;
+    }
+
+    /** Record the conversion of LEN characters, if metrics are being
+     *  collected. */
+    private static void converted(long len) {
+        Metrics metrics = Metrics.GLOBAL;
+        if (metrics != null) {
+            metrics.converted(len);
+        }
+    }
+
+    /** Check that I have had my rotors inserted. */
+    private void checkSetup() {
+        if (_slots[0] == null) {
+            throw error("Incomplete setup");
+        }
+    }
+
+    /** Smallest piece into which convertParallel divides a message. */
+    static final int PARALLEL_GRAIN = 1 << 15;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
-    /** Stores all possible rotors that a Machine might use. */
-    private Hashtable<String, Rotor> _allRotors;
+    /** Maps the name of each rotor a Machine might use to its index in
+     *  _catalog. */
+    private Hashtable<String, Integer> _allRotors;
+
+    /** All possible rotors that a Machine might use. */
+    private final Rotor[] _catalog;
+
+    /** _copies[ID] is my own copy of _catalog[ID], or null if I have not
+     *  yet used it. */
+    private final Rotor[] _copies;
+
+    /** _ids[K] is the index in _catalog of the rotor in slot K (not
+     *  counting the plugboard), or -1 if the slot is empty. */
+    private final int[] _ids;
 
     /** Represents the slots of the machine; contains rotors. */
     private Rotor[] _slots;
 
+    /** While _notchedValid, the slots K > 0 whose rotors are at a
+     *  notch. */
+    private final BitSet _notched = new BitSet();
+
+    /** True iff _notched reflects the current rotor settings.  Cleared
+     *  whenever rotors are moved other than by step. */
+    private boolean _notchedValid;
+
     /** Number of rotors stored in the machine. */
     private int _numRotors;
 
     /** Number of pawls in the machine. */
     private int _numPawls;
 
+    /** Memory bound for the compiled engine's tables; 0 if it is off. */
+    private long _cacheBytes;
+
+    /** Cached substitutions for the current rotors and plugboard, built
+     *  on first use. */
+    private StateCache _cache;
+
+    /** Settings of my rotors when _cache was last (re)started. */
+    private int[] _cacheFixed;
+
+    /** The plugboard installed by insertRotors. */
+    private final FixedRotor _noPlugboard;
+
+    /** While _coreValid, the path from the leftmost moving rotor through
+     *  the stationary rotors and reflector and back: _core[C] is the
+     *  letter re-entering that rotor when C leaves it. */
+    private final int[] _core;
+
+    /** While _plugValid, the plugboard, applied on the way in, and its
+     *  inverse, applied on the way out. */
+    private final int[] _plugIn, _plugOut;
+
+    /** While _coreValid, the slots the forward pass of route visits
+     *  before _core are _first .. numRotors()-1; the backward pass after
+     *  _core visits _back .. numRotors()-1. */
+    private int _first, _back;
+
+    /** True iff _core, _first and _back reflect my stationary rotors and
+     *  their settings.  Cleared only when one of those changes (see
+     *  slotChanged), so setting the moving rotors keeps it. */
+    private boolean _coreValid;
+
+    /** True iff _plugIn and _plugOut reflect my plugboard. */
+    private boolean _plugValid;
+
 }
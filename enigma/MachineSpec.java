@@ -0,0 +1,220 @@
+package enigma;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** An immutable description of an Enigma machine, as given by a
+ *  configuration file: its alphabet, its numbers of slots and pawls,
+ *  and its catalog of available rotors.  A spec is parsed once and may
+ *  then be shared freely among threads, each of which obtains its own
+ *  Sessions (or, within the package, Machines) from it.  Machines copy
+ *  the rotors they insert, so the catalog's rotors never move.
+ *  @author Jack Mango
+ */
+public final class MachineSpec {
+
+    /** A spec for machines over ALPHA with NUMROTORS slots and NUMPAWLS
+     *  pawls, choosing their rotors from ROTORS.  Building a machine
+     *  checks that these are consistent. */
+    MachineSpec(Alphabet alpha, int numRotors, int numPawls,
+                List<Rotor> rotors) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _numPawls = numPawls;
+        _rotors = Collections.unmodifiableList(rotors);
+        _checker = newMachine();
+    }
+
+    /** Return the spec given by the configuration text CONFIG. */
+    public static MachineSpec parse(String config) {
+        return read(new Scanner(config));
+    }
+
+    /** Return the spec given by the configuration read from CONFIG. */
+    public static MachineSpec read(Reader config) {
+        return read(new Scanner(config));
+    }
+
+    /** Return the spec given by the file named PATH, which may be a text
+     *  configuration or an image compiled from one (see ConfigImage). */
+    static MachineSpec load(String path) {
+        if (ConfigImage.isImage(path)) {
+            return ConfigImage.load(path);
+        }
+        try (FileReader config = new FileReader(path)) {
+            return read(config);
+        } catch (IOException excp) {
+            throw error("could not open %s", path);
+        }
+    }
+
+    /** Return the spec given by the configuration read from CONFIG. */
+    static MachineSpec read(Scanner config) {
+        long start = System.nanoTime();
+        try {
+            Alphabet alpha = new Alphabet(config.nextLine());
+            int numRotors = Integer.parseInt(config.next("\\d+"));
+            int numPawls = Integer.parseInt(config.next("\\d+"));
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            config.nextLine();
+            while (config.hasNext()) {
+                rotors.add(readRotor(config, alpha));
+            }
+            MachineSpec result =
+                new MachineSpec(alpha, numRotors, numPawls, rotors);
+            Metrics.loadSince(start);
+            return result;
+        } catch (NoSuchElementException excp) {
+            throw error("configuration file truncated");
+        }
+    }
+
+    /** Return a rotor over ALPHA, reading its description from CONFIG. */
+    private static Rotor readRotor(Scanner config, Alphabet alpha) {
+        try {
+            String name = config.next();
+            String type = config.next();
+            String cycles = "";
+            while (config.hasNext("(\\([^()\\s]*\\))+")) {
+                cycles += config.next();
+            }
+            if (type.charAt(0) == 'M') {
+                return new MovingRotor(name,
+                        new Permutation(cycles, alpha), type.substring(1));
+            } else if (type.charAt(0) == 'N') {
+                return new FixedRotor(name,
+                        new Permutation(cycles, alpha));
+            } else if (type.charAt(0) == 'R') {
+                return new Reflector(name,
+                        new Permutation(cycles, alpha));
+            } else {
+                throw error("bad rotor description");
+            }
+        } catch (NoSuchElementException excp) {
+            throw error("bad rotor description");
+        }
+    }
+
+    /** Return a new session with this configuration, set up according to
+     *  the settings line SETTINGS. */
+    public Session newSession(String settings) {
+        Session result = new Session(this, newMachine());
+        result.setUp(settings);
+        return result;
+    }
+
+    /** Return the characters of my alphabet, in order. */
+    public String alphabetChars() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < _alphabet.size(); i++) {
+            result.appendCodePoint(_alphabet.toCodePoint(i));
+        }
+        return result.toString();
+    }
+
+    /** Return the number of rotor slots of my machines. */
+    public int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls of my machines. */
+    public int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return my catalog of rotors. */
+    List<Rotor> rotors() {
+        return _rotors;
+    }
+
+    /** Return all the arrangements of rotors from my catalog that a
+     *  standard machine can hold: a reflector, then distinct fixed
+     *  rotors, then distinct moving rotors in the rightmost numPawls()
+     *  slots. */
+    List<String[]> rotorOrders() {
+        ArrayList<String> reflectors = new ArrayList<>(),
+            fixed = new ArrayList<>(), moving = new ArrayList<>();
+        for (Rotor rotor : _rotors) {
+            if (rotor.reflecting()) {
+                reflectors.add(rotor.name());
+            } else if (rotor.rotates()) {
+                moving.add(rotor.name());
+            } else {
+                fixed.add(rotor.name());
+            }
+        }
+        int numFixed = _numRotors - 1 - _numPawls;
+        ArrayList<String[]> result = new ArrayList<>();
+        for (String reflector : reflectors) {
+            String[] order = new String[_numRotors];
+            order[0] = reflector;
+            arrange(order, 1, numFixed, fixed, moving, result);
+        }
+        return result;
+    }
+
+    /** Fill ORDER[K..] with distinct rotors, taking them from FIXED for
+     *  the first NUMFIXED slots and from MOVING for the rest, adding each
+     *  complete arrangement to RESULT. */
+    private static void arrange(String[] order, int k, int numFixed,
+                                List<String> fixed, List<String> moving,
+                                List<String[]> result) {
+        if (k == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        for (String name : k <= numFixed ? fixed : moving) {
+            boolean used = false;
+            for (int i = 1; i < k; i++) {
+                used |= order[i].equals(name);
+            }
+            if (!used) {
+                order[k] = name;
+                arrange(order, k + 1, numFixed, fixed, moving, result);
+            }
+        }
+    }
+
+    /** Return a new machine with this configuration and no rotors
+     *  inserted. */
+    Machine newMachine() {
+        return new Machine(_alphabet, _numRotors, _numPawls, _rotors);
+    }
+
+    /** Return the settings given by the settings line LINE for my
+     *  machines. */
+    Settings settings(String line) {
+        return Settings.parse(line, _checker);
+    }
+
+    /** Alphabet of my machines. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _numPawls;
+
+    /** Catalog of available rotors. */
+    private final List<Rotor> _rotors;
+
+    /** A machine with no rotors inserted, used only to check settings
+     *  lines, which does not change it. */
+    private final Machine _checker;
+
+}
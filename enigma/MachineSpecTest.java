@@ -0,0 +1,172 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.util.ArrayList;
+
+/** Tests of MachineSpec and Session.
+ *  @author Jack Mango
+ */
+public class MachineSpecTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Settings line for NAVAL_CONFIG. */
+    private static final String SETTINGS = "* B Beta III IV I AXLE (HQ) (EX)";
+
+    /** A long message. */
+    private static final String MSG = message(5000);
+
+    /** Return a message of LEN letters. */
+    private static String message(int len) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < len; i += 1) {
+            result.append((char) ('A' + (i * 7 + i / 26) % 26));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void parseTest() {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        assertEquals(5, spec.numRotors());
+        assertEquals(3, spec.numPawls());
+        assertEquals(26, spec.alphabetChars().length());
+        Session session = spec.newSession(SETTINGS);
+        assertEquals("AXLE", session.rotorSettings());
+        String cipher = session.convert("FROMHISSHOULDERHIAWATHA");
+        session.reset();
+        assertEquals("AXLE", session.rotorSettings());
+        assertEquals("FROMHISSHOULDERHIAWATHA", session.convert(cipher));
+    }
+
+    @Test
+    public void independentSessionsTest() {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        Session a = spec.newSession(SETTINGS);
+        Session b = spec.newSession(SETTINGS);
+        String expected = a.convert(MSG);
+        a.reset();
+        StringBuilder fromA = new StringBuilder(), fromB = new StringBuilder();
+        for (int i = 0; i < MSG.length(); i += 1) {
+            fromA.append(a.convert(MSG.substring(i, i + 1)));
+            fromB.append(b.convert(MSG.substring(i, i + 1)));
+        }
+        assertEquals(expected, fromA.toString());
+        assertEquals(expected, fromB.toString());
+    }
+
+    @Test
+    public void concurrentSessionsTest() throws InterruptedException {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        String expected = spec.newSession(SETTINGS).convert(MSG);
+        String[] results = new String[8];
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < results.length; t += 1) {
+            final int k = t;
+            threads.add(new Thread(() -> {
+                Session session = spec.newSession(SETTINGS);
+                for (int r = 0; r < 20; r += 1) {
+                    session.reset();
+                    results[k] = session.convert(MSG);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String result : results) {
+            assertEquals(expected, result);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void badSettingsTest() {
+        MachineSpec.parse(NAVAL_CONFIG).newSession("* B Beta III IV");
+    }
+
+    @Test
+    public void errorPrecedenceTest() {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        String[][] cases = {
+            {"* B Beta III IV V AXLE (H5)", "Rotor doesn't exist!"},
+            {"* B Beta III III I AXLE (H5)", "Duplicate rotors!"},
+            {"* B Beta III IV I AX5E (H5)", "Setting not in alphabet!"},
+            {"* B Beta III IV I AXLE (H5)",
+             "Character in cycle is not in the alphabet!"},
+        };
+        for (String[] c : cases) {
+            try {
+                spec.settings(c[0]);
+                fail("accepted " + c[0]);
+            } catch (EnigmaException excp) {
+                assertEquals(c[0], c[1], excp.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void tooManyRotorsTest() {
+        Machine mach = MachineSpec.parse(NAVAL_CONFIG).newMachine();
+        String[] rotors = {"B", "Beta", "III", "IV", "I", "II"};
+        try {
+            mach.checkRotors(rotors);
+            fail("checkRotors accepted six rotors");
+        } catch (EnigmaException excp) {
+            assertEquals("Too many rotors provided!", excp.getMessage());
+        }
+        try {
+            mach.insertRotors(rotors);
+            fail("insertRotors accepted six rotors");
+        } catch (EnigmaException excp) {
+            assertEquals("Too many rotors provided!", excp.getMessage());
+        }
+    }
+
+    /** Return S with each upper-case letter replaced by a supplementary
+     *  character. */
+    private static String sup(String s) {
+        StringBuilder result = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            if (c >= 'A' && c <= 'Z') {
+                result.appendCodePoint(0x1F600 + c - 'A');
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void supplementaryTest() {
+        String config =
+            sup("ABCDEFGHIJKLMNOPQRSTUVWXYZ") + "\n"
+            + " 5 3\n"
+            + " I M" + sup("Q (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)")
+            + "\n II M" + sup("E (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT)")
+            + "\n III M" + sup("V (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)")
+            + "\n IV M" + sup("J (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)")
+            + "\n Beta N " + sup("(ALBEVFCYODJWUGNMQTZSKPR) (HIX)")
+            + "\n B R " + sup("(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ)")
+            + " " + sup("(LO) (MP) (RX) (SZ) (TV)") + "\n";
+        MachineSpec spec = MachineSpec.parse(config);
+        assertEquals(26, spec.alphabetChars().codePointCount(
+            0, spec.alphabetChars().length()));
+        Session session =
+            spec.newSession("* B Beta III IV I " + sup("AXLE (HQ) (EX)"));
+        assertEquals(sup("AXLE"), session.rotorSettings());
+        assertEquals(sup(MachineSpec.parse(NAVAL_CONFIG).newSession(SETTINGS)
+                         .convert(MSG)),
+                     session.convert(sup(MSG)));
+    }
+
+}
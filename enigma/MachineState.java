@@ -0,0 +1,64 @@
+package enigma;
+
+/** An immutable record of the rotors, rotor settings and plugboard of a
+ *  Machine, produced by Machine.snapshot and used by Machine.restore to
+ *  return the machine to that state.  It is held entirely in primitive
+ *  arrays: the index in the machine's catalog of available rotors of
+ *  the rotor in each slot, that rotor's setting, and the mapping of the
+ *  plugboard.  It refers to none of the machine's rotors, and so stays
+ *  valid however the machine is used afterwards.
+ *  @author Jack Mango
+ */
+final class MachineState {
+
+    /** A state of OWNER in which its slots, not counting the plugboard,
+     *  hold the rotors with catalog indices ROTORS at SETTINGS, and whose
+     *  plugboard maps each alphabet index K to PLUGBOARD[K].  Takes
+     *  ownership of all three arrays. */
+    MachineState(Machine owner, int[] rotors, int[] settings,
+                 int[] plugboard) {
+        _owner = owner;
+        _rotors = rotors;
+        _settings = settings;
+        _plugboard = plugboard;
+    }
+
+    /** Return the machine whose state I record. */
+    Machine owner() {
+        return _owner;
+    }
+
+    /** Return the number of rotor slots I record, not counting the
+     *  plugboard. */
+    int size() {
+        return _rotors.length;
+    }
+
+    /** Return the catalog index of the rotor in slot K. */
+    int rotor(int k) {
+        return _rotors[k];
+    }
+
+    /** Return the setting of the rotor in slot K. */
+    int setting(int k) {
+        return _settings[k];
+    }
+
+    /** Return the alphabet index to which the plugboard maps index K. */
+    int plugboard(int k) {
+        return _plugboard[k];
+    }
+
+    /** The machine I belong to. */
+    private final Machine _owner;
+
+    /** Catalog index of the rotor in each slot. */
+    private final int[] _rotors;
+
+    /** Setting of each rotor. */
+    private final int[] _settings;
+
+    /** Mapping of the plugboard. */
+    private final int[] _plugboard;
+
+}
@@ -3,8 +3,11 @@ package enigma;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class MachineTest {
     private Alphabet alphabet = new Alphabet("ABCDEFG");
@@ -25,7 +28,7 @@ public class MachineTest {
     private Machine mach3 = new Machine(alphabet, 3, 1, rotors);
     private Machine mach4 = new Machine(alphabet, 4, 2, rotors);
 
-    private String[] rlst;
+    private String[] rlst = new String[4];
 
     @Test
     public void numRotorsTest() {
@@ -85,4 +88,190 @@ public class MachineTest {
         assertEquals("GCABDDADCGBAECDGFDGCFBE",
                 mach4.convert("BEBEBEDFADDEAFFADEDBEAD"));
     }
+
+    @Test
+    public void bulkConvertTest() {
+        String msg = "BEBEBEDFADDEAFFADEDBEAD";
+        mach3.insertRotors(new String[] {"rotor4", "rotor3", "rotor2"});
+        mach3.setRotors("DC");
+        String expected = mach3.convert(msg);
+
+        mach3.setRotors("DC");
+        char[] out = new char[msg.length() + 2];
+        mach3.convert(msg.toCharArray(), 0, msg.length(), out, 2);
+        assertEquals(expected, new String(out, 2, msg.length()));
+
+        mach3.setRotors("DC");
+        int[] idx = new int[msg.length()];
+        for (int i = 0; i < idx.length; i += 1) {
+            idx[i] = alphabet.toInt(msg.charAt(i));
+        }
+        mach3.convert(idx, 0, idx.length, idx, 0);
+        for (int i = 0; i < idx.length; i += 1) {
+            assertEquals(expected.charAt(i), alphabet.toChar(idx[i]));
+        }
+
+        mach3.setRotors("DC");
+        CharBuffer in = CharBuffer.wrap(msg);
+        CharBuffer outBuf = CharBuffer.allocate(msg.length());
+        mach3.convert(in, outBuf);
+        assertFalse(in.hasRemaining());
+        assertEquals(expected, new String(outBuf.array()));
+    }
+
+    @Test
+    public void parallelConvertTest() {
+        Random random = new Random(8);
+        char[] msg = new char[10 * Machine.PARALLEL_GRAIN + 17];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = alphabet.toChar(random.nextInt(alphabet.size()));
+        }
+        String[] names = {"rotor4", "rotor3", "rotor1", "rotor2"};
+        mach4.insertRotors(names);
+        mach4.setRotors("AEF");
+        String expected = mach4.convert(new String(msg));
+        String after = mach4.rotorSettings();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        mach4.setRotors("AEF");
+        char[] out = new char[msg.length];
+        mach4.convertParallel(msg, 0, msg.length, out, 0, pool);
+        assertEquals(expected, new String(out));
+        assertEquals(after, mach4.rotorSettings());
+
+        mach4.setRotors("AEF");
+        int[] idx = new int[msg.length];
+        for (int i = 0; i < idx.length; i += 1) {
+            idx[i] = alphabet.toInt(msg[i]);
+        }
+        mach4.convertParallel(idx, 0, idx.length, idx, 0, pool);
+        for (int i = 0; i < idx.length; i += 1) {
+            assertEquals(expected.charAt(i), alphabet.toChar(idx[i]));
+        }
+
+        msg[msg.length - 5] = 'Z';
+        mach4.setRotors("AEF");
+        try {
+            mach4.convertParallel(msg, 0, msg.length, msg, 0, pool);
+            fail("unknown character accepted");
+        } catch (EnigmaException excp) {
+            assertEquals(expected.substring(0, msg.length - 5),
+                         new String(msg, 0, msg.length - 5));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void snapshotTest() {
+        String msg = "BEBEBEDFADDEAFFADEDBEAD";
+        mach4.insertRotors(new String[] {"rotor4", "rotor3", "rotor1",
+                                         "rotor2"});
+        mach4.setRotors("BDC");
+        mach4.setPlugboard(new Permutation("(AG) (CE)", alphabet));
+        MachineState start = mach4.snapshot();
+        String expected = mach4.convert(msg);
+        assertEquals(expected, convertFrom(mach4, start, msg));
+
+        mach4.insertRotors(new String[] {"rotor4", "rotor3", "rotor2",
+                                         "rotor1"});
+        mach4.setRotors("AAA");
+        mach4.setPlugboard(new Permutation("", alphabet));
+        assertEquals(expected, convertFrom(mach4, start, msg));
+        assertEquals(expected, convertFrom(mach4, start, msg));
+
+        try {
+            mach3.restore(start);
+            fail("foreign state accepted");
+        } catch (EnigmaException excp) {
+            return;
+        }
+    }
+
+    /** Return the result of sending C through the slots of MACH at
+     *  their current settings one at a time, as Machine did before it
+     *  folded the stationary slots into single tables. */
+    private static int unfoldedRoute(Machine mach, int c) {
+        int letter = c;
+        for (int i = mach.numRotors(); i >= 0; i--) {
+            letter = mach.slot(i).convertForward(letter);
+        }
+        for (int i = 1; i <= mach.numRotors(); i++) {
+            letter = mach.slot(i).convertBackward(letter);
+        }
+        return letter;
+    }
+
+    /** Check that converting N characters with MACH, starting from
+     *  letter START, matches unfoldedRoute. */
+    private static void checkFolded(Machine mach, int n, int start) {
+        int size = mach.alphabet().size();
+        for (int i = 0; i < n; i += 1) {
+            int c = (start + i * 5 + i / 3) % size;
+            int result = mach.convert(c);
+            assertEquals(unfoldedRoute(mach, c), result);
+        }
+    }
+
+    @Test
+    public void foldTest() {
+        ArrayList<Rotor> all = new ArrayList<Rotor>(rotors);
+        all.add(new FixedRotor("rotor5",
+                               new Permutation("(AEB) (CGF)", alphabet)));
+        Machine mach = new Machine(alphabet, 5, 2, all);
+        mach.insertRotors(new String[] {"rotor4", "rotor5", "rotor3",
+                                        "rotor1", "rotor2"});
+        mach.setPlugboard(new Permutation("(AG) (CE)", alphabet));
+        for (String setting : new String[] {"ABCD", "GFAB", "CCCC"}) {
+            mach.setRotors(setting);
+            checkFolded(mach, 100, 0);
+        }
+        mach.insertRotors(new String[] {"rotor4", "rotor3", "rotor5",
+                                        "rotor2", "rotor1"});
+        mach.setRotors("EBAF");
+        checkFolded(mach, 50, 1);
+        MachineState first = mach.snapshot();
+        mach.setRotors("EDAA");
+        mach.setPlugboard(new Permutation("(BD)", alphabet));
+        checkFolded(mach, 50, 2);
+        MachineState second = mach.snapshot();
+        mach.insertRotors(new String[] {"rotor4", "rotor5", "rotor3",
+                                        "rotor1", "rotor2"});
+        checkFolded(mach, 50, 3);
+        MachineState third = mach.snapshot();
+        MachineState[] states = {first, second, third, second, first};
+        for (int k = 0; k < states.length; k += 1) {
+            mach.restore(states[k]);
+            checkFolded(mach, 50, k);
+        }
+    }
+
+    /** Return the result of converting MSG with MACH after restoring it
+     *  to STATE. */
+    private static String convertFrom(Machine mach, MachineState state,
+                                      String msg) {
+        mach.restore(state);
+        return mach.convert(msg);
+    }
+
+    @Test
+    public void stateCacheTest() {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 3000; i += 1) {
+            msg.append(alphabet.toChar((i * 7 + i / 5) % alphabet.size()));
+        }
+        mach3.insertRotors(new String[] {"rotor4", "rotor3", "rotor2"});
+        mach3.setRotors("DC");
+        String expected = mach3.convert(msg.toString());
+        for (long bytes : new long[] {64, 200, 1 << 20}) {
+            mach3.setStateCache(bytes);
+            mach3.setRotors("DC");
+            assertEquals(expected, mach3.convert(msg.toString()));
+        }
+        assertTrue(mach3.stateCache().hits() > 0);
+        mach3.setRotors("AC");
+        String other = mach3.convert(msg.toString());
+        mach3.setStateCache(0);
+        mach3.setRotors("AC");
+        assertEquals(mach3.convert(msg.toString()), other);
+    }
 }
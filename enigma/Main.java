@@ -1,14 +1,22 @@
 package enigma;
 
-import java.io.File;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 
-import java.util.ArrayList;
-import java.util.regex.Pattern;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import static enigma.EnigmaException.*;
 
@@ -19,18 +27,28 @@ public final class Main {
 
     /** Process a sequence of encryptions and decryptions, as
      *  specified by ARGS, where 1 <= ARGS.length <= 3.
-     *  ARGS[0] is the name of a configuration file.
+     *  ARGS[0] is the name of a configuration file, or of an image
+     *  compiled from one by ConfigImage.
      *  ARGS[1] is optional; when present, it names an input file
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.  Input in an alphabet of ASCII characters
+     *  is processed as bytes (see ByteProcessor) unless the system
+     *  property enigma.bytes is "false"; an input file is then read by
+     *  mapping it into memory unless enigma.mmap is "false".
+     *  Messages of at least PARALLEL_MIN characters are converted on
+     *  all available processors unless enigma.parallel is "false".
+     *  ARGS may be preceded by "--profile", or the system property
+     *  enigma.profile set to "true", to print on the standard error a
+     *  summary of where the time went (see Profile). */
     public static void main(String... args) {
         try {
             new Main(args).process();
             return;
         } catch (EnigmaException excp) {
+            Metrics.reported(excp);
             System.err.printf("Error: %s%n", excp.getMessage());
         }
         System.exit(1);
@@ -38,154 +56,163 @@ public final class Main {
 
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        if (args.length > 0 && args[0].equals("--profile")) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+            _profile = new Profile();
+        } else if (Profile.requested()) {
+            _profile = new Profile();
+        }
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        checkInput(args[0]);
+        _configName = args[0];
 
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _rawInput = openInput(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _rawInput = System.in;
         }
 
         if (args.length > 2) {
-            _output = getOutput(args[2]);
+            _rawOutput = openOutput(args[2]);
         } else {
-            _output = System.out;
+            _rawOutput = System.out;
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Check that the file named NAME can be opened for reading. */
+    private void checkInput(String name) {
         try {
-            return new Scanner(new File(name));
+            new FileInputStream(name).close();
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a stream reading from the file named NAME. */
+    private InputStream openInput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new FileInputStream(name);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Configure an Enigma machine from the contents of configuration
-     *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
-    private void process() {
-        Machine mach = readConfig();
-        while (_input.hasNext()) {
-            String next = _input.nextLine();
-            if (next.isBlank()) {
-                _output.println();
-            } else if (next.charAt(0) == '*') {
-                setUp(mach, next);
-            } else {
-                printMessageLine(mach.convert(next.replaceAll("\\s+", "")));
-            }
-        }
-        while (_input.hasNextLine()) {
-            _output.println();
-            _input.nextLine();
+    /** Return a stream writing to the file named NAME. */
+    private OutputStream openOutput(String name) {
+        try {
+            return new FileOutputStream(name);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
         }
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
-        try {
-            _alphabet = new Alphabet(_config.nextLine());
-            int numRotors = Integer.parseInt(_config.next("\\d+"));
-            int numPawls = Integer.parseInt(_config.next("\\d+"));
-            ArrayList<Rotor> rotors = new ArrayList<>();
-            _config.nextLine();
-            while (_config.hasNext()) {
-                rotors.add(readRotor());
-            }
-            return new Machine(_alphabet, numRotors, numPawls, rotors);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
-        }
+    /** Return a buffered reader for IN. */
+    static BufferedReader reader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in), BUFFER_SIZE);
+    }
+
+    /** Return a buffered writer for OUT. */
+    static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE);
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Configure an Enigma machine from the contents of configuration
+     *  file _configName and apply it to the messages in _rawInput, sending
+     *  the results to _rawOutput. */
+    void process() {
         try {
-            String name = _config.next();
-            String type = _config.next();
-            String cycles = "";
-            while (_config.hasNext("(\\([\\w\\.]*\\))+")) {
-                cycles += _config.next();
+            long start = System.nanoTime();
+            Machine mach = readConfig();
+            if (_profile != null) {
+                _profile.lap(Profile.CONFIG, start);
             }
-            if (type.charAt(0) == 'M') {
-                String notches = "";
-                for (int i = 1; i < type.length(); i++) {
-                    notches = notches + type.charAt(i);
+            if (ByteProcessor.usable(_alphabet)
+                && !"false".equals(System.getProperty("enigma.bytes"))) {
+                if (_rawInput instanceof FileInputStream
+                    && !"false".equals(System.getProperty("enigma.mmap"))) {
+                    FileChannel in =
+                        ((FileInputStream) _rawInput).getChannel();
+                    new MappedProcessor(mach, in, channel(_rawOutput),
+                                        MappedProcessor.WINDOW,
+                                        parallelPool(), _profile).process();
+                } else {
+                    new ByteProcessor(mach, parallelPool(), _profile)
+                        .process(_rawInput, _rawOutput);
                 }
-                return new MovingRotor(name,
-                        new Permutation(cycles, _alphabet), notches);
-            } else if (type.charAt(0) == 'N') {
-                return new FixedRotor(name,
-                        new Permutation(cycles, _alphabet));
-            } else if (type.charAt(0) == 'R') {
-                return new Reflector(name,
-                        new Permutation(cycles, _alphabet));
-            } else {
-                throw error("bad rotor description");
+                return;
+            }
+            new MessageProcessor(mach, parallelPool(), _profile)
+                .process(reader(_rawInput), writer(_rawOutput));
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        } finally {
+            if (_profile != null) {
+                _profile.report(System.err);
             }
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
         }
     }
 
-    /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
-        Pattern p = Pattern.compile(" ");
-        String[] s = p.split(settings);
-        String[] rotors = new String[M.numRotors()];
-        for (int i = 1; i <= M.numRotors(); i++) {
-            rotors[i - 1] = s[i];
-        }
-        M.insertRotors(rotors);
-        M.setRotors(s[M.numRotors() + 1]);
-        String cycles = "";
-        for (int i = M.numRotors() + 2; i < s.length; i++) {
-            cycles = cycles + s[i];
+    /** Return the pool used to convert long messages in parallel, or
+     *  null if they are to be converted sequentially. */
+    static ForkJoinPool parallelPool() {
+        if ("false".equals(System.getProperty("enigma.parallel"))) {
+            return null;
         }
-        M.setPlugboard(new Permutation(cycles, _alphabet));
+        return ForkJoinPool.commonPool();
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        String formattedMsg = "";
-        for (int i = 0, j = 0; i < msg.length(); i++) {
-            if (j == 5) {
-                formattedMsg = formattedMsg + " ";
-                j = 0;
-            }
-            formattedMsg = formattedMsg + msg.charAt(i);
-            j += 1;
+    /** Return a channel writing to OUT. */
+    private static WritableByteChannel channel(OutputStream out) {
+        if (out instanceof FileOutputStream) {
+            return ((FileOutputStream) out).getChannel();
         }
-        _output.println(formattedMsg);
+        return Channels.newChannel(out);
+    }
+
+    /** Return true iff C is one of the characters matched by \s in a
+     *  regular expression. */
+    static boolean isSpace(int c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _configName, which may be a text configuration or an image
+     *  compiled from one (see ConfigImage). */
+    private Machine readConfig() {
+        MachineSpec spec = MachineSpec.load(_configName);
+        _alphabet = spec.alphabet();
+        return spec.newMachine();
     }
 
+    /** Set M according to the specification given on SETTINGS,
+     *  which must have the format specified in the assignment. */
+    void setUp(Machine M, String settings) {
+        Settings.parse(settings, M).applyTo(M);
+    }
+
+    /** Size of the input and output buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Length of the shortest message converted in parallel. */
+    static final int PARALLEL_MIN = 1 << 18;
+
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
-    /** Source of input messages. */
-    private Scanner _input;
+    /** Source of input messages, as given on the command line. */
+    private InputStream _rawInput;
+
+    /** Destination of output, as given on the command line. */
+    private OutputStream _rawOutput;
+
+    /** Name of the configuration file. */
+    private String _configName;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Where the time of this run goes, or null if it is not being
+     *  profiled. */
+    private Profile _profile;
 
-    /** File for encoded/decoded messages. */
-    private PrintStream _output;
 }
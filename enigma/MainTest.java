@@ -0,0 +1,90 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Tests of Main against known ciphertext, through each of the ways it
+ *  may read and write messages.
+ *  @author Jack Mango
+ */
+public class MainTest {
+
+    /** Messages, with blank lines, a change of settings, and a last line
+     *  with no terminator. */
+    private static final String INPUT =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n"
+        + "TOOK THE CAMERA OF ROSEWOOD\n"
+        + "\n"
+        + "* B Gamma II IV I ZAJP (AZ) (QW)\n"
+        + "MADE OF SLIDING FOLDING ROSEWOOD\n"
+        + "\n"
+        + "\n"
+        + "NEATLY PUT IT ALL TOGETHER";
+
+    /** The output of Main on INPUT, with lines separated by "\n".  The
+     *  first two lines are those of the project specification; the
+     *  rest were computed separately from the rotor wirings, and
+     *  include a double step of rotor II on the first character after
+     *  the change of settings. */
+    private static final String OUTPUT =
+        "QVPQS OKOIL PUBKJ ZPISF XDW\n"
+        + "BHCNS CXNUO AATZX SRCFY DGU\n"
+        + "\n"
+        + "IHKPK IVMTG GSKBS FMXUV CAKHK KVX\n"
+        + "\n"
+        + "\n"
+        + "WPZET ZQDSF OYOML EZZXG TG\n";
+
+    /** Return the output of Main on INPUT, using NAVAL_CONFIG, with
+     *  the system property enigma.bytes set to BYTES and enigma.mmap
+     *  set to MMAP. */
+    private static String run(String bytes, String mmap)
+        throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path config = dir.resolve("naval.conf");
+        Path input = dir.resolve("input.in");
+        Path output = dir.resolve("output.out");
+        Files.writeString(config, NAVAL_CONFIG);
+        Files.writeString(input, INPUT);
+        System.setProperty("enigma.bytes", bytes);
+        System.setProperty("enigma.mmap", mmap);
+        try {
+            new Main(new String[] { config.toString(), input.toString(),
+                                    output.toString() }).process();
+            return Files.readString(output);
+        } finally {
+            System.clearProperty("enigma.bytes");
+            System.clearProperty("enigma.mmap");
+            Files.delete(config);
+            Files.delete(input);
+            Files.deleteIfExists(output);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void messageProcessorTest() throws IOException {
+        assertEquals(OUTPUT.replace("\n", System.lineSeparator()),
+                     run("false", "false"));
+    }
+
+    @Test
+    public void byteProcessorTest() throws IOException {
+        assertEquals(OUTPUT.replace("\n", System.lineSeparator()),
+                     run("true", "false"));
+    }
+
+    @Test
+    public void mappedProcessorTest() throws IOException {
+        assertEquals(OUTPUT.replace("\n", System.lineSeparator()),
+                     run("true", "true"));
+    }
+
+}
@@ -0,0 +1,124 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.EnigmaException.*;
+
+/** An AsciiProcessor for a message file, which it maps into memory a
+ *  window at a time, parsing settings lines and message bytes directly
+ *  out of the mapped region.  Only usable for alphabets made of ASCII
+ *  characters, whose bytes in the input file are the characters
+ *  themselves.  Produces exactly the output of Main's line-by-line path.
+ *  @author Jack Mango
+ */
+class MappedProcessor extends AsciiProcessor {
+
+    /** Size of each mapped window of the input. */
+    static final int WINDOW = 1 << 26;
+
+    /** A processor that reads messages from INPUT, mapped WINDOW bytes at
+     *  a time, and writes the results of converting them with MACH to
+     *  OUTPUT.  Messages of at least Main.PARALLEL_MIN characters are
+     *  converted on POOL, unless it is null.  MACH's alphabet must be
+     *  ASCII (see isAscii).  Records in PROFILE, unless it is null, where
+     *  the time goes. */
+    MappedProcessor(Machine mach, FileChannel input,
+                    WritableByteChannel output, int window,
+                    ForkJoinPool pool, Profile profile) {
+        super(mach, pool, profile);
+        _in = input;
+        _outChannel = output;
+        _window = window;
+    }
+
+    /** Process the whole input, flushing all output, even on error. */
+    void process() throws IOException {
+        try {
+            long size = _in.size();
+            long pos = 0;
+            begin();
+            while (pos < size) {
+                pos = nextLine(pos, size);
+            }
+        } finally {
+            flush();
+        }
+    }
+
+    /** Process the line starting at POS in an input of SIZE bytes and
+     *  return the position of the next line. */
+    private long nextLine(long pos, long size) throws IOException {
+        long end = pos;
+        while (end < size) {
+            int b = at(end);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            end += 1;
+        }
+        long next = end + 1;
+        if (end + 1 < size && at(end) == '\r' && at(end + 1) == '\n') {
+            next = end + 2;
+        }
+        processLine(pos, end);
+        return next;
+    }
+
+    /** Return the input byte at POS (which must be less than the input
+     *  size) as an unsigned value, mapping a new window if needed. */
+    @Override
+    int at(long pos) throws IOException {
+        long k = pos - _windowStart;
+        if (_map == null || k < 0 || k >= _map.limit()) {
+            long len = Math.min(_window, _in.size() - pos);
+            _map = _in.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            _windowStart = pos;
+            k = 0;
+        }
+        return _map.get((int) k) & 0xff;
+    }
+
+    @Override
+    String decode(long start, long end, Charset charset) throws IOException {
+        if (end - start > Integer.MAX_VALUE - 8) {
+            throw error("input line too long");
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) at(start + i);
+        }
+        return new String(bytes, charset);
+    }
+
+    @Override
+    void write(byte[] bytes, int len) throws IOException {
+        ByteBuffer out = ByteBuffer.wrap(bytes, 0, len);
+        while (out.hasRemaining()) {
+            _outChannel.write(out);
+        }
+    }
+
+    /** Input file. */
+    private final FileChannel _in;
+
+    /** Destination of converted messages. */
+    private final WritableByteChannel _outChannel;
+
+    /** Maximum size of a mapped window. */
+    private final int _window;
+
+    /** Currently mapped window of the input, or null. */
+    private MappedByteBuffer _map;
+
+    /** Input position of the first byte of _map. */
+    private long _windowStart;
+
+}
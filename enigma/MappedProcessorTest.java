@@ -0,0 +1,85 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Scanner;
+
+/** Tests of MappedProcessor, mapping its input in windows small enough
+ *  that lines, and "\r\n" terminators, are split between windows.
+ *  @author Jack Mango
+ */
+public class MappedProcessorTest {
+
+    /** A settings line for NAVAL_CONFIG. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** Another settings line for NAVAL_CONFIG. */
+    private static final String OTHER_SETTINGS =
+        "* B Gamma II IV I ABCD (AZ) (QW)";
+
+    /** Largest window tried. */
+    private static final int MAX_WINDOW = 50;
+
+    /** Return the output of MappedProcessor on INPUT, mapped WINDOW
+     *  bytes at a time, followed by any error message. */
+    private static String actual(String input, int window)
+        throws IOException {
+        Path file = Files.createTempFile("enigma", ".in");
+        try {
+            Files.write(file, input.getBytes());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            String err = "";
+            try (FileChannel in = FileChannel.open(file)) {
+                Machine mach = MachineSpec.read(new Scanner(NAVAL_CONFIG))
+                    .newMachine();
+                new MappedProcessor(mach, in, Channels.newChannel(out),
+                                    window, null, null).process();
+            } catch (EnigmaException excp) {
+                err = "Error: " + excp.getMessage();
+            }
+            return out.toString() + err;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /** Check that MappedProcessor, with every window from 1 to
+     *  MAX_WINDOW bytes, and MessageProcessor agree on INPUT. */
+    private static void check(String input) throws IOException {
+        String expected = messageOutput(input);
+        for (int window = 1; window <= MAX_WINDOW; window += 1) {
+            assertEquals("window " + window, expected,
+                         actual(input, window));
+        }
+    }
+
+    @Test
+    public void windowTest() throws IOException {
+        check(SETTINGS + "\nHELLO WORLD\r\n\r\nFROM HIS SHOULDER\rHIAWA"
+              + "\n\n" + OTHER_SETTINGS + "\r\nTHA TOOK THE CAMERA\r\r\n"
+              + SETTINGS + "\nHELLO WORLD");
+        check(SETTINGS + "\r\n\r\n \t\r\nHELLO\r\n");
+        check("");
+        check("\r\n\n\r");
+    }
+
+    @Test
+    public void fallbackTest() throws IOException {
+        check(SETTINGS + "\nHELLO\r\nHEL\u00e9LO\r\nMORE\n");
+        check(SETTINGS + "\nHELLO\r\nHELLO world\r\nMORE\n");
+        check("HELLO\r\n");
+        check(SETTINGS + "\r\n* B Beta III IV\r\nHELLO\r\n");
+    }
+
+}
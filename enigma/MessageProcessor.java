@@ -0,0 +1,176 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+import java.util.concurrent.ForkJoinPool;
+
+/** Applies a Machine to a stream of message lines in the input format
+ *  of Main: settings lines starting with "*", message lines, which are
+ *  converted and printed in groups of five, and blank lines, which are
+ *  copied.  A processor is used by one thread at a time.
+ *  @author Jack Mango
+ */
+class MessageProcessor {
+
+    /** A processor converting with MACH, using POOL for messages of at
+     *  least Main.PARALLEL_MIN characters unless POOL is null. */
+    MessageProcessor(Machine mach, ForkJoinPool pool) {
+        this(mach, pool, null);
+    }
+
+    /** A processor converting with MACH, using POOL as above, and
+     *  recording in PROFILE, unless it is null, where its time goes. */
+    MessageProcessor(Machine mach, ForkJoinPool pool, Profile profile) {
+        _machine = mach;
+        _setups = new SetupCache(mach);
+        _pool = pool;
+        _profile = profile;
+    }
+
+    /** Process the lines of INPUT, writing the results to OUTPUT, which
+     *  is flushed even on error. */
+    void process(BufferedReader input, Writer output) throws IOException {
+        try {
+            String next;
+            _time = System.nanoTime();
+            while ((next = input.readLine()) != null) {
+                lap(Profile.INPUT);
+                if (_profile != null) {
+                    _profile.line();
+                }
+                if (next.isBlank()) {
+                    output.write(LINE_SEPARATOR);
+                    lap(Profile.OUTPUT);
+                } else if (next.charAt(0) == '*') {
+                    if (_profile != null) {
+                        _profile.beginSetUp(next);
+                    }
+                    _setups.apply(next);
+                    if (_profile != null) {
+                        _profile.endSetUp();
+                    }
+                    lap(Profile.SETUP);
+                } else {
+                    long start = System.nanoTime();
+                    if (_profile != null) {
+                        _profile.beginMessage();
+                    }
+                    convertLine(next, output);
+                    Metrics.messageSince(start);
+                }
+            }
+        } finally {
+            output.flush();
+        }
+    }
+
+    /** Convert the message line NEXT and print the result on OUTPUT. */
+    private void convertLine(String next, Writer output) throws IOException {
+        int len;
+        if (!_machine.alphabet().isBmp()) {
+            String msg = next.codePoints().filter(c -> !Main.isSpace(c))
+                .collect(StringBuilder::new, StringBuilder::appendCodePoint,
+                         StringBuilder::append).toString();
+            lap(Profile.INPUT);
+            String result = _machine.convert(msg);
+            lap(Profile.CONVERT);
+            printCodePoints(output, result);
+            len = msg.codePointCount(0, msg.length());
+        } else {
+            len = stripWhitespace(next);
+            lap(Profile.INPUT);
+            if (_pool != null && len >= Main.PARALLEL_MIN) {
+                _machine.convertParallel(_msg, 0, len, _msg, 0, _pool);
+            } else {
+                _machine.convert(_msg, 0, len, _msg, 0);
+            }
+            lap(Profile.CONVERT);
+            printMessageLine(output, _msg, len);
+        }
+        if (_profile != null) {
+            _profile.endMessage(len);
+        }
+        lap(Profile.OUTPUT);
+    }
+
+    /** If I am profiling, charge the time since _time to STAGE of
+     *  _profile and advance _time to now. */
+    private void lap(int stage) {
+        if (_profile != null) {
+            _time = _profile.lap(stage, _time);
+        }
+    }
+
+    /** Copy the non-whitespace characters of LINE into _msg, growing it
+     *  as needed, and return how many there were. */
+    private int stripWhitespace(String line) {
+        if (_msg.length < line.length()) {
+            _msg = new char[Math.max(line.length(), 2 * _msg.length)];
+        }
+        int len = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (!Main.isSpace(c)) {
+                _msg[len] = c;
+                len += 1;
+            }
+        }
+        return len;
+    }
+
+    /** Print the first LEN characters of MSG on OUTPUT in groups of five
+     *  (except that the last group may have fewer letters). */
+    private static void printMessageLine(Writer output, char[] msg, int len)
+        throws IOException {
+        for (int i = 0; i < len; i += GROUP) {
+            if (i > 0) {
+                output.write(' ');
+            }
+            output.write(msg, i, Math.min(GROUP, len - i));
+        }
+        output.write(LINE_SEPARATOR);
+    }
+
+    /** Print MSG on OUTPUT in groups of five code points (except that the
+     *  last group may have fewer). */
+    private static void printCodePoints(Writer output, String msg)
+        throws IOException {
+        int[] chars = msg.codePoints().toArray();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < chars.length; i++) {
+            if (i > 0 && i % GROUP == 0) {
+                line.append(' ');
+            }
+            line.appendCodePoint(chars[i]);
+        }
+        output.write(line.toString());
+        output.write(LINE_SEPARATOR);
+    }
+
+    /** Number of characters in each printed group. */
+    private static final int GROUP = 5;
+
+    /** Line terminator used for output, as for println. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Machine doing the conversions. */
+    private final Machine _machine;
+
+    /** Sets up _machine from settings lines. */
+    private final SetupCache _setups;
+
+    /** Pool for converting long messages, or null. */
+    private final ForkJoinPool _pool;
+
+    /** Where my time goes, or null if I am not profiling. */
+    private final Profile _profile;
+
+    /** System.nanoTime() up to which _profile has been charged. */
+    private long _time;
+
+    /** Buffer holding the message line being converted. */
+    private char[] _msg = new char[256];
+
+}
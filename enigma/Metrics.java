@@ -0,0 +1,234 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/** Counters and timers describing the work done by the enigma classes.
+ *  Collection is off unless the system property enigma.metrics is
+ *  "true" when this class is loaded, in which case GLOBAL holds the
+ *  metrics of this JVM and is registered with the platform MBean server
+ *  as NAME.  Code recording a measurement reads GLOBAL once and does
+ *  nothing if it is null, so that collection costs nothing when it is
+ *  off.  Counters are LongAdders, and measurements are recorded once
+ *  per message or buffer rather than per character, so that recording
+ *  costs little when it is on.
+ *  @author Jack Mango
+ */
+public final class Metrics implements MetricsMBean {
+
+    /** Name under which GLOBAL is registered. */
+    public static final String NAME = "enigma:type=Metrics";
+
+    /** Largest number of distinct error messages counted separately;
+     *  any others are counted under OTHER_ERRORS. */
+    static final int MAX_ERROR_KINDS = 100;
+
+    /** Key under which errors beyond MAX_ERROR_KINDS are counted. */
+    static final String OTHER_ERRORS = "(other)";
+
+    /** The metrics of this JVM, or null if collection is off. */
+    static final Metrics GLOBAL =
+        Boolean.getBoolean("enigma.metrics") ? register(new Metrics()) : null;
+
+    /** Record in GLOBAL, if metrics are being collected, the processing
+     *  of a message begun at System.nanoTime() START. */
+    static void messageSince(long start) {
+        Metrics metrics = GLOBAL;
+        if (metrics != null) {
+            metrics.message(System.nanoTime() - start);
+        }
+    }
+
+    /** Record in GLOBAL, if metrics are being collected, the loading of
+     *  a configuration begun at System.nanoTime() START. */
+    static void loadSince(long start) {
+        Metrics metrics = GLOBAL;
+        if (metrics != null) {
+            metrics.configLoaded(System.nanoTime() - start);
+        }
+    }
+
+    /** Record in GLOBAL, if metrics are being collected, the reporting
+     *  of EXCP. */
+    static void reported(EnigmaException excp) {
+        Metrics metrics = GLOBAL;
+        if (metrics != null) {
+            metrics.error(excp.getMessage());
+        }
+    }
+
+    /** Record the conversion of COUNT characters. */
+    void converted(long count) {
+        _chars.add(count);
+    }
+
+    /** Record the processing of a message, which took NANOS
+     *  nanoseconds. */
+    void message(long nanos) {
+        _messages.increment();
+        _latencies.record(nanos / 1000);
+    }
+
+    /** Record the setting up of a machine from a settings line. */
+    void setUp() {
+        _setups.increment();
+    }
+
+    /** Record a lookup in a SetupCache, which found the settings line
+     *  iff HIT. */
+    void setupCached(boolean hit) {
+        (hit ? _setupHits : _setupMisses).increment();
+    }
+
+    /** Record the loading of a configuration, which took NANOS
+     *  nanoseconds. */
+    void configLoaded(long nanos) {
+        _configLoads.increment();
+        _configNanos.add(nanos);
+    }
+
+    /** Record the reporting of an error with message MSG. */
+    void error(String msg) {
+        _errors.increment();
+        LongAdder count = _errorCounts.get(msg);
+        if (count == null) {
+            if (_errorCounts.size() >= MAX_ERROR_KINDS) {
+                msg = OTHER_ERRORS;
+            }
+            count = _errorCounts.computeIfAbsent(msg, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    @Override
+    public long getCharactersConverted() {
+        return _chars.sum();
+    }
+
+    @Override
+    public long getMessagesProcessed() {
+        return _messages.sum();
+    }
+
+    @Override
+    public long getSetups() {
+        return _setups.sum();
+    }
+
+    @Override
+    public long getSetupCacheHits() {
+        return _setupHits.sum();
+    }
+
+    @Override
+    public long getSetupCacheMisses() {
+        return _setupMisses.sum();
+    }
+
+    @Override
+    public long getConfigLoads() {
+        return _configLoads.sum();
+    }
+
+    @Override
+    public double getConfigLoadMillis() {
+        return _configNanos.sum() / 1e6;
+    }
+
+    @Override
+    public long getMessageLatencyP50() {
+        return _latencies.percentile(50);
+    }
+
+    @Override
+    public long getMessageLatencyP99() {
+        return _latencies.percentile(99);
+    }
+
+    @Override
+    public long getMessageLatencyMax() {
+        return _latencies.max();
+    }
+
+    @Override
+    public long getErrors() {
+        return _errors.sum();
+    }
+
+    @Override
+    public String[] getErrorCounts() {
+        return _errorCounts.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue().sum(),
+                                           a.getValue().sum()))
+            .map(e -> e.getValue().sum() + ": " + e.getKey())
+            .toArray(String[]::new);
+    }
+
+    @Override
+    public synchronized void reset() {
+        _chars.reset();
+        _messages.reset();
+        _setups.reset();
+        _setupHits.reset();
+        _setupMisses.reset();
+        _configLoads.reset();
+        _configNanos.reset();
+        _errors.reset();
+        _errorCounts.clear();
+        _latencies = new LatencyRecorder();
+    }
+
+    /** Register METRICS with the platform MBean server as NAME, and
+     *  return it. */
+    private static Metrics register(Metrics metrics) {
+        register(metrics, ManagementFactory.getPlatformMBeanServer(), NAME);
+        return metrics;
+    }
+
+    /** Register METRICS with SERVER as NAME, giving up quietly if it
+     *  cannot be registered: the metrics are still collected. */
+    static void register(Metrics metrics, MBeanServer server, String name) {
+        try {
+            server.registerMBean(metrics, new ObjectName(name));
+        } catch (JMException excp) {
+            return;
+        }
+    }
+
+    /** Characters converted. */
+    private final LongAdder _chars = new LongAdder();
+
+    /** Messages processed. */
+    private final LongAdder _messages = new LongAdder();
+
+    /** Machines set up. */
+    private final LongAdder _setups = new LongAdder();
+
+    /** Setups found and not found in a SetupCache. */
+    private final LongAdder _setupHits = new LongAdder(),
+        _setupMisses = new LongAdder();
+
+    /** Configurations loaded. */
+    private final LongAdder _configLoads = new LongAdder();
+
+    /** Total nanoseconds spent loading configurations. */
+    private final LongAdder _configNanos = new LongAdder();
+
+    /** Errors reported. */
+    private final LongAdder _errors = new LongAdder();
+
+    /** Count of errors reported, by message. */
+    private final Map<String, LongAdder> _errorCounts =
+        new ConcurrentHashMap<>();
+
+    /** Times taken to process messages. */
+    private volatile LatencyRecorder _latencies = new LatencyRecorder();
+
+}
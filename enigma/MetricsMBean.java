@@ -0,0 +1,55 @@
+package enigma;
+
+/** The management interface of Metrics, under which it is registered
+ *  with JMX as Metrics.NAME.
+ *  @author Jack Mango
+ */
+public interface MetricsMBean {
+
+    /** Return the number of characters converted. */
+    long getCharactersConverted();
+
+    /** Return the number of messages processed. */
+    long getMessagesProcessed();
+
+    /** Return the number of times a machine was set up from a settings
+     *  line. */
+    long getSetups();
+
+    /** Return the number of setups done by restoring a state remembered
+     *  by a SetupCache. */
+    long getSetupCacheHits();
+
+    /** Return the number of setups through a SetupCache that had to
+     *  parse their settings line. */
+    long getSetupCacheMisses();
+
+    /** Return the number of configurations loaded. */
+    long getConfigLoads();
+
+    /** Return the total time spent loading configurations, in
+     *  milliseconds. */
+    double getConfigLoadMillis();
+
+    /** Return the median time to process a message, in microseconds. */
+    long getMessageLatencyP50();
+
+    /** Return the 99th percentile of the time to process a message, in
+     *  microseconds. */
+    long getMessageLatencyP99();
+
+    /** Return the longest time taken to process a message, in
+     *  microseconds. */
+    long getMessageLatencyMax();
+
+    /** Return the number of errors reported. */
+    long getErrors();
+
+    /** Return a line "COUNT: MESSAGE" for each distinct error message,
+     *  most frequent first. */
+    String[] getErrorCounts();
+
+    /** Set all counts to zero. */
+    void reset();
+
+}
@@ -0,0 +1,74 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/** Tests of Metrics.
+ *  @author Jack Mango
+ */
+public class MetricsTest {
+
+    @Test
+    public void countTest() {
+        Metrics metrics = new Metrics();
+        metrics.converted(10);
+        metrics.converted(5);
+        metrics.message(3000);
+        metrics.message(5000);
+        metrics.setUp();
+        metrics.configLoaded(2_000_000);
+        metrics.setupCached(true);
+        metrics.setupCached(false);
+        metrics.setupCached(true);
+        assertEquals(15, metrics.getCharactersConverted());
+        assertEquals(2, metrics.getMessagesProcessed());
+        assertEquals(1, metrics.getSetups());
+        assertEquals(2, metrics.getSetupCacheHits());
+        assertEquals(1, metrics.getSetupCacheMisses());
+        assertEquals(1, metrics.getConfigLoads());
+        assertEquals(2.0, metrics.getConfigLoadMillis(), 1e-9);
+        assertEquals(5, metrics.getMessageLatencyMax());
+        assertTrue(metrics.getMessageLatencyP50() >= 3);
+        metrics.reset();
+        assertEquals(0, metrics.getCharactersConverted());
+        assertEquals(0, metrics.getMessageLatencyMax());
+    }
+
+    @Test
+    public void errorTest() {
+        Metrics metrics = new Metrics();
+        metrics.error("Rotor doesn't exist!");
+        metrics.error("Incomplete setup");
+        metrics.error("Rotor doesn't exist!");
+        assertEquals(3, metrics.getErrors());
+        assertArrayEquals(new String[] { "2: Rotor doesn't exist!",
+                                         "1: Incomplete setup" },
+                          metrics.getErrorCounts());
+        for (int i = 0; i < 2 * Metrics.MAX_ERROR_KINDS; i += 1) {
+            metrics.error("Unknown character: " + i);
+        }
+        assertEquals(Metrics.MAX_ERROR_KINDS + 1,
+                     metrics.getErrorCounts().length);
+    }
+
+    @Test
+    public void mbeanTest() throws Exception {
+        Metrics metrics = new Metrics();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("enigma:type=MetricsTest");
+        Metrics.register(metrics, server, name.toString());
+        try {
+            metrics.converted(42);
+            assertEquals(42L, server.getAttribute(name,
+                                                  "CharactersConverted"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+}
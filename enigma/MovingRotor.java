@@ -1,6 +1,6 @@
 package enigma;
 
-
+import java.util.BitSet;
 
 /** Class that represents a rotating rotor in the enigma machine.
  *  @author Jack Mango
@@ -13,26 +13,40 @@ class MovingRotor extends Rotor {
      *  alphabet).
      */
     MovingRotor(String name, Permutation perm, String notches) {
+        this(name, perm, notches.codePoints()
+             .map(perm.alphabet()::toInt).toArray());
+    }
+
+    /** A rotor named NAME with permutation PERM and notches at the
+     *  positions NOTCHES. */
+    MovingRotor(String name, Permutation perm, int[] notches) {
         super(name, perm);
-        _notches = new int[notches.length()];
-        for (int i = 0; i < notches.length(); i++) {
-            _notches[i] = perm.alphabet().toInt(notches.charAt(i));
+        _notches = new BitSet(perm.size());
+        for (int posn : notches) {
+            _notches.set(posn);
         }
     }
 
+    /** A rotor named NAME with permutation PERM and the notches
+     *  NOTCHES, which it shares. */
+    private MovingRotor(String name, Permutation perm, BitSet notches) {
+        super(name, perm);
+        _notches = notches;
+    }
+
+    @Override
+    Rotor copy() {
+        return copyState(new MovingRotor(name(), permutation(), _notches));
+    }
+
     @Override
     boolean rotates() {
         return true;
     }
 
     @Override
-    boolean atNotch() {
-        for (int i = 0; i < _notches.length; i++) {
-            if (_notches[i] == setting()) {
-                return true;
-            }
-        }
-        return false;
+    boolean atNotch(int posn) {
+        return posn >= 0 && _notches.get(posn);
     }
 
     @Override
@@ -40,7 +54,8 @@ class MovingRotor extends Rotor {
         set(setting() + 1);
     }
 
-    /** Stores my notches. */
-    private int[] _notches;
+    /** The positions at which I am at a notch.  Never modified, so
+     *  that copies may share it. */
+    private final BitSet _notches;
 
 }
@@ -1,6 +1,7 @@
 package enigma;
 
-import java.util.ArrayList;
+import java.util.BitSet;
+
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -13,37 +14,104 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace between cycles is ignored.  Parses CYCLES in a single
+     *  pass, so that construction takes time linear in its length. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        String dubs = "";
-        while (cycles.length() > 0) {
-            int start = cycles.indexOf('(');
-            int end = cycles.indexOf(')') + 1;
-            String cycle = cycles.substring(start, end);
-            for (int i = 1; i < cycle.length() - 1; i++) {
-                char letter = cycle.charAt(i);
-                if (dubs.contains(String.valueOf(letter))) {
-                    throw error("Two cycles contain the same character!");
-                } else if (!_alphabet.contains(letter)) {
+        int n = size();
+        int[] forward = new int[n];
+        for (int i = 0; i < n; i++) {
+            forward[i] = i;
+        }
+        BitSet seen = new BitSet(n);
+        int len = cycles.length();
+        int k = 0;
+        while (true) {
+            while (k < len && Character.isWhitespace(cycles.charAt(k))) {
+                k += 1;
+            }
+            if (k == len) {
+                break;
+            }
+            if (cycles.charAt(k) != '(') {
+                throw error("Malformed cycle!");
+            }
+            k += 1;
+            int first = -1, prev = -1;
+            while (k < len && cycles.charAt(k) != ')') {
+                int ch = cycles.charAt(k);
+                if (Character.isHighSurrogate((char) ch)) {
+                    ch = cycles.codePointAt(k);
+                }
+                k += Character.charCount(ch);
+                int cur = _alphabet.toIndex(ch);
+                if (cur == -1) {
                     throw error("Character in cycle is not in the alphabet!");
+                } else if (seen.get(cur)) {
+                    throw error("Two cycles contain the same character!");
+                }
+                seen.set(cur);
+                if (first == -1) {
+                    first = cur;
                 } else {
-                    dubs = dubs + letter;
+                    forward[prev] = cur;
                 }
+                prev = cur;
+            }
+            if (k == len) {
+                throw error("Malformed cycle!");
+            }
+            k += 1;
+            if (first != -1) {
+                forward[prev] = first;
+            }
+        }
+        if (compact(n)) {
+            _forward = null;
+            _inverse = null;
+            _forwardChars = new char[n];
+            _inverseChars = new char[n];
+            for (int i = 0; i < n; i++) {
+                _forwardChars[i] = (char) forward[i];
+                _inverseChars[forward[i]] = (char) i;
             }
-            addCycle(cycle);
-            cycles = cycles.replace(cycle, "").trim();
+        } else {
+            _forward = forward;
+            _inverse = new int[n];
+            for (int i = 0; i < n; i++) {
+                _inverse[forward[i]] = i;
+            }
+            _forwardChars = null;
+            _inverseChars = null;
         }
     }
 
-    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
-    private void addCycle(String cycle) {
-        _cycles.add(cycle.substring(1, cycle.length() - 1));
+    /** A permutation of ALPHABET mapping K to FORWARD[K], whose inverse
+     *  is INVERSE.  Both arrays must have an entry for each character of
+     *  ALPHABET. */
+    Permutation(int[] forward, int[] inverse, Alphabet alphabet) {
+        _alphabet = alphabet;
+        if (forward.length != size() || inverse.length != size()) {
+            throw error("Permutation table has the wrong size!");
+        }
+        for (int i = 0; i < forward.length; i++) {
+            if (forward[i] < 0 || forward[i] >= size()
+                || inverse[forward[i]] != i) {
+                throw error("Inconsistent permutation tables!");
+            }
+        }
+        boolean compact = compact(size());
+        _forward = compact ? null : forward;
+        _inverse = compact ? null : inverse;
+        _forwardChars = compact ? chars(forward) : null;
+        _inverseChars = compact ? chars(inverse) : null;
     }
 
     /** Return the value of P modulo the size of this permutation. */
     final int wrap(int p) {
+        if (p >= 0 && p < size()) {
+            return p;
+        }
         int r = p % size();
         if (r < 0) {
             r += size();
@@ -51,15 +119,6 @@ class Permutation {
         return r;
     }
 
-    /** Return the value of P modulo the size of a given CYCLE. */
-    final int wrapCycle(String cycle, int p) {
-        int r = p % cycle.length();
-        if (r < 0) {
-            r += cycle.length();
-        }
-        return r;
-    }
-
     /** Returns the size of the alphabet I permute. */
     int size() {
         return _alphabet.size();
@@ -68,27 +127,13 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        for (String cycle : _cycles) {
-            int index = cycle.indexOf(_alphabet.toChar(p));
-            if (index != -1) {
-                char found = cycle.charAt(wrapCycle(cycle, index + 1));
-                return _alphabet.toInt(found);
-            }
-        }
-        return p;
+        return forward(wrap(p));
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to C modulo the alphabet size. */
     int invert(int c) {
-        for (String cycle : _cycles) {
-            int index = cycle.indexOf(_alphabet.toChar(c));
-            if (index != -1) {
-                char found = cycle.charAt(wrapCycle(cycle, index - 1));
-                return _alphabet.toInt(found);
-            }
-        }
-        return c;
+        return inverse(wrap(c));
     }
 
     /** Return the result of applying this permutation to the index of P
@@ -107,23 +152,111 @@ class Permutation {
         return _alphabet;
     }
 
+    /** Return the permutation that applies FIRST and then me.  FIRST
+     *  must be over an alphabet of my size. */
+    Permutation compose(Permutation first) {
+        if (first.size() != size()) {
+            throw error("Permutations have different sizes!");
+        }
+        int n = size();
+        int[] forward = new int[n], inverse = new int[n];
+        for (int k = 0; k < n; k++) {
+            int to = forward(first.forward(k));
+            forward[k] = to;
+            inverse[to] = k;
+        }
+        return new Permutation(forward, inverse, _alphabet);
+    }
+
+    /** Return my inverse. */
+    Permutation inverse() {
+        int n = size();
+        int[] forward = new int[n], inverse = new int[n];
+        for (int k = 0; k < n; k++) {
+            forward[k] = inverse(k);
+            inverse[k] = forward(k);
+        }
+        return new Permutation(forward, inverse, _alphabet);
+    }
+
+    /** Return my conjugate by a rotation of SHIFT: the permutation
+     *  taking K to permute(K + SHIFT) - SHIFT, modulo the alphabet size.
+     *  This is the permutation performed by a rotor with my permutation
+     *  at setting SHIFT. */
+    Permutation conjugate(int shift) {
+        int n = size();
+        int s = wrap(shift);
+        int[] forward = new int[n], inverse = new int[n];
+        for (int k = 0; k < n; k++) {
+            int to = wrap(forward(wrap(k + s)) - s);
+            forward[k] = to;
+            inverse[to] = k;
+        }
+        return new Permutation(forward, inverse, _alphabet);
+    }
+
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        int tot = 0;
-        for (String cycle : _cycles) {
-            if (cycle.length() == 1) {
+        for (int i = 0; i < size(); i++) {
+            if (forward(i) == i) {
                 return false;
             }
-            tot += cycle.length();
         }
-        return tot == _alphabet.size();
+        return true;
+    }
+
+    /** Return the result of applying me to K, which is in range. */
+    private int forward(int k) {
+        return _forward != null ? _forward[k] : _forwardChars[k];
+    }
+
+    /** Return the result of applying my inverse to K, which is in
+     *  range. */
+    private int inverse(int k) {
+        return _inverse != null ? _inverse[k] : _inverseChars[k];
+    }
+
+    /** Return true iff the tables of a permutation of SIZE characters
+     *  are kept as chars: alphabets above SMALL_LIMIT whose indices
+     *  still fit in a char. */
+    private static boolean compact(int size) {
+        return size > SMALL_LIMIT && size <= CHAR_LIMIT;
+    }
+
+    /** Return VALUES as chars. */
+    private static char[] chars(int[] values) {
+        char[] result = new char[values.length];
+        for (int k = 0; k < values.length; k++) {
+            result[k] = (char) values[k];
+        }
+        return result;
     }
 
+    /** Largest alphabet whose tables are always ints, since they are
+     *  small and permute then needs no conversion. */
+    static final int SMALL_LIMIT = 1 << 8;
+
+    /** Largest alphabet whose indices fit in a char. */
+    static final int CHAR_LIMIT = 1 << 16;
+
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** Cycles of this permutation. */
-    private ArrayList<String> _cycles = new ArrayList<String>();
+    /** Entry K of _forward is the result of applying this permutation
+     *  to K, or null if my tables are chars. */
+    private final int[] _forward;
+
+    /** Entry K of _inverse is the result of applying the inverse of this
+     *  permutation to K, or null if my tables are chars. */
+    private final int[] _inverse;
+
+    /** _forward for alphabets of between SMALL_LIMIT and CHAR_LIMIT
+     *  characters, where chars halve the size of the table; otherwise
+     *  null. */
+    private final char[] _forwardChars;
+
+    /** _inverse stored as chars, like _forwardChars. */
+    private final char[] _inverseChars;
 
 }
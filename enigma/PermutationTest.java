@@ -80,9 +80,115 @@ public class PermutationTest {
         assertEquals('D', perm2.invert('D'));
     }
 
+    @Test
+    public void inverseConsistencyTest() {
+        perm = new Permutation(NAVALA.get("IV"), UPPER);
+        for (int i = 0; i < perm.size(); i += 1) {
+            assertEquals(i, perm.invert(perm.permute(i)));
+            assertEquals(i, perm.permute(perm.invert(i)));
+        }
+        assertEquals(perm.permute(3), perm.permute(3 + perm.size()));
+        assertEquals(perm.invert(25), perm.invert(-1));
+    }
+
+    @Test
+    public void algebraTest() {
+        Permutation p = new Permutation(NAVALA.get("I"), UPPER);
+        Permutation q = new Permutation(NAVALA.get("IV"), UPPER);
+        Permutation pq = p.compose(q), inv = p.inverse();
+        for (int i = 0; i < p.size(); i += 1) {
+            assertEquals(p.permute(q.permute(i)), pq.permute(i));
+            assertEquals(i, pq.invert(pq.permute(i)));
+            assertEquals(p.invert(i), inv.permute(i));
+            assertEquals(p.permute(i), inv.invert(i));
+            for (int shift : new int[] {0, 3, 25, -4, 29}) {
+                assertEquals(p.wrap(p.permute(i + shift) - shift),
+                             p.conjugate(shift).permute(i));
+            }
+        }
+        assertEquals(p.conjugate(2).conjugate(5).permute(7),
+                     p.conjugate(7).permute(7));
+        assertEquals(p.permute(4), p.compose(p.inverse()).compose(p)
+                     .permute(4));
+        try {
+            p.compose(perm1);
+            fail("permutations of different sizes composed");
+        } catch (EnigmaException excp) {
+            return;
+        }
+    }
+
     @Test
     public void derangementTest() {
         assertTrue(perm1.derangement());
         assertFalse(perm2.derangement());
     }
+
+    @Test
+    public void cycleErrorTest() {
+        String[] bad = { "(AB) (BC)", "(AB) (AB)", "(Ab)", "(AB", "AB",
+                         "(AB) C (DE)", "(A(B))" };
+        for (String cycles : bad) {
+            try {
+                new Permutation(cycles, UPPER);
+                fail("accepted " + cycles);
+            } catch (EnigmaException excp) {
+                continue;
+            }
+        }
+    }
+
+    @Test
+    public void largeAlphabetTest() {
+        int n = 20000;
+        StringBuilder chars = new StringBuilder();
+        StringBuilder cycles = new StringBuilder("(");
+        for (int i = 0; i < n; i += 1) {
+            chars.append((char) (0x4E00 + i));
+            cycles.append((char) (0x4E00 + (i * 7919) % n));
+        }
+        cycles.append(")");
+        perm = new Permutation(cycles.toString(),
+                               new Alphabet(chars.toString()));
+        assertTrue(perm.derangement());
+        for (int i = 0; i < n; i += 1) {
+            assertEquals((i + 1) * 7919 % n, perm.permute(i * 7919 % n));
+        }
+    }
+
+    @Test
+    public void hugeAlphabetTest() {
+        int n = 70000;
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            chars.appendCodePoint(0x20000 + i);
+        }
+        Alphabet huge = new Alphabet(chars.toString());
+        assertEquals(n, huge.size());
+        perm = new Permutation("(" + chars + ")", huge);
+        assertTrue(perm.derangement());
+        for (int i = 0; i < n; i += 1) {
+            assertEquals((i + 1) % n, perm.permute(i));
+            assertEquals(i, perm.invert((i + 1) % n));
+        }
+    }
+
+    @Test
+    public void charTableTest() {
+        int n = 1000;
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            chars.append((char) (0x4E00 + i));
+        }
+        Alphabet large = new Alphabet(chars.toString());
+        perm = new Permutation("(" + chars + ")", large);
+        Permutation back = perm.inverse();
+        Permutation identity = back.compose(perm);
+        for (int i = 0; i < n; i += 1) {
+            assertEquals((i + 1) % n, perm.permute(i));
+            assertEquals(i, perm.invert((i + 1) % n));
+            assertEquals(i, back.permute((i + 1) % n));
+            assertEquals(i, identity.permute(i));
+        }
+    }
 }
@@ -0,0 +1,206 @@
+package enigma;
+
+import java.io.PrintStream;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Wall time spent by one run of Main in each of its stages, with counts
+ *  of the lines, messages and characters it processed and the bytes its
+ *  thread allocated.  Main keeps a profile when run with --profile or
+ *  with the system property enigma.profile set to "true", and prints its
+ *  summary on the standard error when done.  The processors charge the
+ *  time between successive calls of lap to the stage named in each call,
+ *  so that the stages add up to the whole run.  While profiling, each
+ *  message and settings line is also recorded as a JFR event
+ *  (enigma.Message or enigma.SetUp), which shows up in a flight
+ *  recording alongside GC and compilation events, provided the flight
+ *  recorder was started (as by -XX:StartFlightRecording) before the
+ *  run.  Otherwise no events are created, since initializing JFR would
+ *  take much of a short run.  Allocation counts
+ *  only the thread running Main: that of the pool threads converting
+ *  long messages in parallel is not included.
+ *  @author Jack Mango
+ */
+final class Profile {
+
+    /** Stage reading and building the machine configuration. */
+    static final int CONFIG = 0;
+
+    /** Stage reading input lines and extracting message characters. */
+    static final int INPUT = 1;
+
+    /** Stage parsing settings lines and setting up the machine. */
+    static final int SETUP = 2;
+
+    /** Stage converting message characters. */
+    static final int CONVERT = 3;
+
+    /** Stage grouping converted characters and writing them out. */
+    static final int OUTPUT = 4;
+
+    /** Names of the stages, by number. */
+    private static final String[] STAGES = {
+        "config", "input", "setup", "convert", "output"
+    };
+
+    /** A profile of a run starting now. */
+    Profile() {
+        _events = FlightRecorder.isInitialized();
+        _allocatedStart = allocated();
+        _start = System.nanoTime();
+    }
+
+    /** Return true iff profiling was requested by the system property
+     *  enigma.profile. */
+    static boolean requested() {
+        return Boolean.getBoolean("enigma.profile");
+    }
+
+    /** Charge the time since System.nanoTime() SINCE to STAGE, and return
+     *  the current System.nanoTime(). */
+    long lap(int stage, long since) {
+        long now = System.nanoTime();
+        _nanos[stage] += now - since;
+        return now;
+    }
+
+    /** Record the reading of an input line. */
+    void line() {
+        _lines += 1;
+    }
+
+    /** Record the start of a message. */
+    void beginMessage() {
+        if (_events) {
+            _message = new MessageEvent();
+            _message.begin();
+        }
+    }
+
+    /** Record the end of the message last begun, which had CHARS
+     *  characters. */
+    void endMessage(long chars) {
+        _messages += 1;
+        _chars += chars;
+        if (_message != null) {
+            _message.characters = chars;
+            _message.commit();
+            _message = null;
+        }
+    }
+
+    /** Record the start of setting up the machine from SETTINGS. */
+    void beginSetUp(String settings) {
+        if (_events) {
+            _setUp = new SetUpEvent();
+            _setUp.settings = settings;
+            _setUp.begin();
+        }
+    }
+
+    /** Record the end of the setup last begun. */
+    void endSetUp() {
+        _setUps += 1;
+        if (_setUp != null) {
+            _setUp.commit();
+            _setUp = null;
+        }
+    }
+
+    /** Print a summary of this profile, up to now, on OUT. */
+    void report(PrintStream out) {
+        long total = System.nanoTime() - _start;
+        long allocated = allocated();
+        StringBuilder stages = new StringBuilder();
+        for (int s = 0; s < STAGES.length; s++) {
+            stages.append(String.format(" %s %.1f ms (%.1f%%),", STAGES[s],
+                                        _nanos[s] / 1e6,
+                                        100.0 * _nanos[s] / total));
+        }
+        out.printf("profile:%s total %.1f ms%n", stages, total / 1e6);
+        out.printf("profile: %d lines, %d messages, %d setups, "
+                   + "%d characters%n", _lines, _messages, _setUps, _chars);
+        out.printf("profile: %.2f Mchar/s converting, %.2f Mchar/s "
+                   + "overall%n", rate(_chars, _nanos[CONVERT]),
+                   rate(_chars, total));
+        if (allocated < 0 || _allocatedStart < 0) {
+            out.printf("profile: allocation not measured%n");
+        } else {
+            out.printf("profile: %.1f MB allocated%n",
+                       (allocated - _allocatedStart) / 1e6);
+        }
+    }
+
+    /** Return the rate in millions per second of COUNT things done in
+     *  NANOS nanoseconds. */
+    private static double rate(long count, long nanos) {
+        return nanos == 0 ? 0 : count * 1e3 / nanos;
+    }
+
+    /** Return the number of bytes allocated so far by the current thread,
+     *  or -1 if the JVM cannot tell. */
+    private static long allocated() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun =
+                (com.sun.management.ThreadMXBean) threads;
+            if (sun.isThreadAllocatedMemorySupported()
+                && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /** JFR event spanning the processing of a message line. */
+    @Name("enigma.Message")
+    @Label("Enigma Message")
+    @Category("Enigma")
+    static final class MessageEvent extends Event {
+        /** Number of characters converted. */
+        @Label("Characters")
+        long characters;
+    }
+
+    /** JFR event spanning the processing of a settings line. */
+    @Name("enigma.SetUp")
+    @Label("Enigma Setup")
+    @Category("Enigma")
+    static final class SetUpEvent extends Event {
+        /** The settings line. */
+        @Label("Settings")
+        String settings;
+    }
+
+    /** System.nanoTime() at the start of the run. */
+    private final long _start;
+
+    /** Bytes allocated by the current thread at the start of the run, or
+     *  -1. */
+    private final long _allocatedStart;
+
+    /** _nanos[S] is the time charged to stage S. */
+    private final long[] _nanos = new long[STAGES.length];
+
+    /** Counts of input lines, messages, setups and converted
+     *  characters. */
+    private long _lines, _messages, _setUps, _chars;
+
+    /** True iff I record JFR events. */
+    private final boolean _events;
+
+    /** Event for the message being processed, or null. */
+    private MessageEvent _message;
+
+    /** Event for the setup being processed, or null. */
+    private SetUpEvent _setUp;
+
+}
@@ -0,0 +1,104 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Tests of Profile.
+ *  @author Jack Mango
+ */
+public class ProfileTest {
+
+    /** An input file for NAVAL_CONFIG. */
+    private static final String INPUT =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n"
+        + "\n"
+        + "TOOK THE CAMERA OF ROSEWOOD\n";
+
+    /** Return what Main writes on the standard error when run with ARGS
+     *  on NAVAL_CONFIG and INPUT, checking that its output is the same as
+     *  without profiling. */
+    private static String profile(String... args) throws Exception {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Path in = Files.createTempFile("enigma", ".in");
+        Path out = Files.createTempFile("enigma", ".out");
+        Files.writeString(config, NAVAL_CONFIG);
+        Files.writeString(in, INPUT);
+        PrintStream err = System.err;
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        try {
+            new Main(new String[] {config.toString(), in.toString(),
+                                   out.toString()}).process();
+            String expected = Files.readString(out);
+            String[] all = new String[args.length + 3];
+            System.arraycopy(args, 0, all, 0, args.length);
+            all[args.length] = config.toString();
+            all[args.length + 1] = in.toString();
+            all[args.length + 2] = out.toString();
+            System.setErr(new PrintStream(report, true));
+            new Main(all).process();
+            assertEquals(expected, Files.readString(out));
+        } finally {
+            System.setErr(err);
+            Files.delete(config);
+            Files.delete(in);
+            Files.delete(out);
+        }
+        return report.toString();
+    }
+
+    @Test
+    public void lapTest() {
+        Profile profile = new Profile();
+        long start = System.nanoTime();
+        long t = profile.lap(Profile.INPUT, start);
+        assertTrue(t >= start);
+        profile.line();
+        profile.beginSetUp("* B Beta I II III AAAA");
+        profile.endSetUp();
+        profile.beginMessage();
+        profile.endMessage(12);
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        profile.report(new PrintStream(report, true));
+        String text = report.toString();
+        assertTrue(text.contains("1 lines, 1 messages, 1 setups, "
+                                 + "12 characters"));
+        for (String stage : new String[] {
+                "config", "input", "setup", "convert", "output" }) {
+            assertTrue(text.contains(" " + stage + " "));
+        }
+    }
+
+    @Test
+    public void mainTest() throws Exception {
+        String report = profile("--profile");
+        assertTrue(report.contains("4 lines, 2 messages, 1 setups, "
+                                   + "46 characters"));
+        assertEquals("", profile());
+    }
+
+    @Test
+    public void lineByLineTest() throws Exception {
+        String mmap = System.getProperty("enigma.mmap");
+        System.setProperty("enigma.mmap", "false");
+        try {
+            String report = profile("--profile");
+            assertTrue(report.contains("4 lines, 2 messages, 1 setups, "
+                                       + "46 characters"));
+        } finally {
+            if (mmap == null) {
+                System.clearProperty("enigma.mmap");
+            } else {
+                System.setProperty("enigma.mmap", mmap);
+            }
+        }
+    }
+
+}
@@ -13,6 +13,11 @@ class Reflector extends FixedRotor {
         super(name, perm);
     }
 
+    @Override
+    Rotor copy() {
+        return new Reflector(name(), permutation());
+    }
+
     @Override
     boolean reflecting() {
         return true;
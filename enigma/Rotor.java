@@ -78,6 +78,12 @@ class Rotor {
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return atNotch(setting());
+    }
+
+    /** Returns true iff I would allow the rotor to my left to advance
+     *  if my setting were POSN. */
+    boolean atNotch(int posn) {
         return false;
     }
 
@@ -85,6 +91,18 @@ class Rotor {
     void advance() {
     }
 
+    /** Return a new rotor like me, at my current setting, that moves
+     *  independently of me. */
+    Rotor copy() {
+        return copyState(new Rotor(_name, _permutation));
+    }
+
+    /** Give ROTOR my setting and return it. */
+    Rotor copyState(Rotor rotor) {
+        rotor._setting = _setting;
+        return rotor;
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
@@ -0,0 +1,151 @@
+package enigma;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.*;
+
+/** The progress of a key search (see CribSearch and IocSearch): how
+ *  many of its candidate keys have been tried, and how fast.  Also runs
+ *  a search from the command line, reporting its progress on the
+ *  standard error while it runs.
+ *  @author Jack Mango
+ */
+final class SearchProgress {
+
+    /** A key search that main can run. */
+    interface Search {
+        /** Run me on POOL and return the results to print, one per
+         *  line. */
+        List<?> run(ForkJoinPool pool);
+
+        /** Return a one-line summary of my progress so far. */
+        String status();
+    }
+
+    /** Creates the search described by command-line arguments. */
+    interface Command {
+        /** Return the search of the keys of SPEC described by ARGS,
+         *  whose first argument named SPEC's configuration. */
+        Search create(MachineSpec spec, String[] args);
+    }
+
+    /** Number of candidates a thread tries between updates of the shared
+     *  count.  Small enough that progress reports move steadily, large
+     *  enough that the threads rarely touch the shared count. */
+    static final int BATCH = 1 << 10;
+
+    /** Milliseconds between progress reports from main. */
+    private static final long INTERVAL = 2000;
+
+    /** Progress of a search of TOTAL candidate keys. */
+    SearchProgress(long total) {
+        _total = total;
+    }
+
+    /** Record that the search starts now. */
+    void start() {
+        _start = System.nanoTime();
+    }
+
+    /** Record that the search finishes now. */
+    void finish() {
+        _end = System.nanoTime();
+    }
+
+    /** Record that a thread has tried COUNT more candidates. */
+    void add(long count) {
+        _tested.add(count);
+    }
+
+    /** Return the number of candidate keys. */
+    long total() {
+        return _total;
+    }
+
+    /** Return the number of candidate keys tried so far. */
+    long tested() {
+        return _tested.sum();
+    }
+
+    /** Return the number of candidate keys tried per second, so far. */
+    double throughput() {
+        if (_start == 0) {
+            return 0;
+        }
+        long end = _end == 0 ? System.nanoTime() : _end;
+        return tested() / Math.max(1e-9, (end - _start) / 1e9);
+    }
+
+    /** Return a one-line summary of my progress. */
+    String status() {
+        return String.format("%d/%d keys tried, %.0f keys/s", tested(),
+                             total(), throughput());
+    }
+
+    /** Run the search that COMMAND creates from ARGS, which must number
+     *  from MIN to MAX and start with the name of a configuration file
+     *  or image, and print its results to the standard output.  Prints
+     *  the search's status to the standard error every INTERVAL
+     *  milliseconds while it runs, and when it finishes.  On an error,
+     *  prints it, or USAGE if ARGS are the wrong number, and exits with
+     *  code 1. */
+    static void main(String[] args, int min, int max, String usage,
+                     Command command) {
+        try {
+            if (args.length < min || args.length > max) {
+                throw error("Usage: %s", usage);
+            }
+            Search search = command.create(MachineSpec.load(args[0]), args);
+            Thread progress = new Thread(() -> report(search));
+            progress.setDaemon(true);
+            progress.start();
+            for (Object result : search.run(ForkJoinPool.commonPool())) {
+                System.out.println(result);
+            }
+            progress.interrupt();
+            System.err.println(search.status());
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return ARGS[K] as an integer, or DFLT if there are no more
+     *  than K ARGS. */
+    static int intArg(String[] args, int k, int dflt) {
+        if (args.length <= k) {
+            return dflt;
+        }
+        try {
+            return Integer.parseInt(args[k]);
+        } catch (NumberFormatException excp) {
+            throw error("bad number: %s", args[k]);
+        }
+    }
+
+    /** Print the status of SEARCH to the standard error every INTERVAL
+     *  milliseconds until interrupted. */
+    private static void report(Search search) {
+        try {
+            while (true) {
+                Thread.sleep(INTERVAL);
+                System.err.println(search.status());
+            }
+        } catch (InterruptedException excp) {
+            return;
+        }
+    }
+
+    /** Number of candidate keys. */
+    private final long _total;
+
+    /** Number of candidate keys tried. */
+    private final LongAdder _tested = new LongAdder();
+
+    /** System.nanoTime() at the start and end of the search, or 0. */
+    private volatile long _start, _end;
+
+}
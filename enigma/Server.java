@@ -0,0 +1,344 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static enigma.EnigmaException.*;
+
+/** A long-lived Enigma server, which saves clients the cost of starting
+ *  a JVM and parsing a configuration for every run.  It listens on a
+ *  Unix domain socket or a localhost TCP port and serves each
+ *  connection on its own thread (a virtual thread where the JVM has
+ *  them), with its own machine, so that requests run concurrently.
+ *  Configurations are parsed on first use and kept until their files
+ *  change.
+ *
+ *  Protocol: the client sends the UTF string (as for
+ *  DataOutputStream.writeUTF) CONVERT, the UTF string absolute path of
+ *  a configuration file, and then the bytes of an input file in Main's
+ *  format, closing its side of the connection at the end.  The server
+ *  answers with a sequence of frames, each a type byte, a length and
+ *  that many bytes: DATA frames carry the output Main would produce, and
+ *  the last frame is either DONE (empty) or ERROR (carrying the message
+ *  Main would report).  A client sending STATS instead receives the
+ *  server's latency summary as a DATA frame followed by DONE.
+ *  @author Jack Mango
+ */
+public final class Server {
+
+    /** Default TCP port. */
+    public static final int DEFAULT_PORT = 7341;
+
+    /** Request types. */
+    static final String CONVERT = "CONVERT", STATS = "STATS";
+
+    /** Frame types. */
+    static final byte DATA = 'D', DONE = 'K', ERROR = 'E';
+
+    /** Size of the socket buffers. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** A server accepting connections on LISTENER. */
+    Server(ServerSocketChannel listener) {
+        _listener = listener;
+        _threads = TaskThreads.executor(0);
+    }
+
+    /** Run a server as directed by ARGS: optionally "--socket PATH" to
+     *  listen on the Unix domain socket PATH or "--port N" to listen on
+     *  localhost port N (default DEFAULT_PORT), followed by the names of
+     *  configuration files to load at once.  Prints a latency summary to
+     *  the standard error on exit. */
+    public static void main(String... args) {
+        try {
+            int k = 0;
+            SocketAddress address = address(args, k);
+            if (address != null) {
+                k = 2;
+            } else {
+                address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                                DEFAULT_PORT);
+            }
+            Server server = new Server(listen(address));
+            for (; k < args.length; k++) {
+                server.spec(new File(args[k]).getAbsolutePath());
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                System.err.println(server.latencies().summary())));
+            System.err.printf("Listening on %s%n", address);
+            server.serve();
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return the address given by "--socket PATH" or "--port N" at
+     *  ARGS[K], or null if neither is there. */
+    static SocketAddress address(String[] args, int k) {
+        if (k + 1 >= args.length) {
+            return null;
+        } else if (args[k].equals("--socket")) {
+            return UnixDomainSocketAddress.of(args[k + 1]);
+        } else if (args[k].equals("--port")) {
+            try {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                             Integer.parseInt(args[k + 1]));
+            } catch (NumberFormatException excp) {
+                throw error("bad port number: %s", args[k + 1]);
+            }
+        }
+        return null;
+    }
+
+    /** Return a channel listening on ADDRESS, replacing any stale Unix
+     *  domain socket file. */
+    static ServerSocketChannel listen(SocketAddress address) {
+        try {
+            ServerSocketChannel result;
+            if (address instanceof UnixDomainSocketAddress) {
+                Path path = ((UnixDomainSocketAddress) address).getPath();
+                Files.deleteIfExists(path);
+                path.toFile().deleteOnExit();
+                result = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            } else {
+                result = ServerSocketChannel.open();
+            }
+            return result.bind(address);
+        } catch (IOException excp) {
+            throw error("could not listen on %s: %s", address,
+                        excp.getMessage());
+        }
+    }
+
+    /** Accept and serve connections until my channel is closed. */
+    void serve() {
+        try {
+            while (true) {
+                SocketChannel connection = _listener.accept();
+                _threads.execute(() -> handle(connection));
+            }
+        } catch (IOException excp) {
+            _threads.shutdown();
+        }
+    }
+
+    /** Stop accepting connections. */
+    void close() {
+        try {
+            _listener.close();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Return the address on which I listen. */
+    SocketAddress address() {
+        try {
+            return _listener.getLocalAddress();
+        } catch (IOException excp) {
+            throw error("server closed");
+        }
+    }
+
+    /** Return the latencies of the requests served so far. */
+    LatencyRecorder latencies() {
+        return _latencies;
+    }
+
+    /** Serve the request on CONNECTION, and close it. */
+    private void handle(SocketChannel connection) {
+        long start = System.nanoTime();
+        try (connection) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                inputStream(connection), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(outputStream(connection),
+                                         BUFFER_SIZE));
+            try {
+                String request = in.readUTF();
+                if (request.equals(STATS)) {
+                    writeFrame(out, DATA, (_latencies.summary()
+                                           + System.lineSeparator())
+                               .getBytes(StandardCharsets.UTF_8));
+                } else if (request.equals(CONVERT)) {
+                    MachineSpec spec = spec(in.readUTF());
+                    if (ByteProcessor.usable(spec.alphabet())) {
+                        new ByteProcessor(spec.newMachine(),
+                                          Main.parallelPool(), null)
+                            .process(in, new FrameStream(out));
+                    } else {
+                        new MessageProcessor(spec.newMachine(),
+                                             Main.parallelPool())
+                            .process(Main.reader(in),
+                                     Main.writer(new FrameStream(out)));
+                    }
+                    _latencies.record((System.nanoTime() - start) / 1000);
+                } else {
+                    throw error("unknown request: %s", request);
+                }
+                writeFrame(out, DONE, new byte[0]);
+            } catch (EnigmaException excp) {
+                reportError(out, excp);
+            } catch (RuntimeException excp) {
+                reportError(out, error("internal server error"));
+            }
+            out.flush();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Record EXCP in Metrics and send its message to the client in an
+     *  ERROR frame on OUT. */
+    private static void reportError(DataOutputStream out,
+                                    EnigmaException excp)
+        throws IOException {
+        Metrics.reported(excp);
+        writeFrame(out, ERROR,
+                   excp.getMessage().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Return the spec for the configuration file named PATH, parsing it
+     *  if it is new or has changed since it was last parsed. */
+    MachineSpec spec(String path) {
+        File file = new File(path);
+        long modified = file.lastModified();
+        LoadedSpec loaded = _specs.get(path);
+        if (loaded == null || loaded.modified != modified) {
+            loaded = new LoadedSpec(modified, MachineSpec.load(path));
+            _specs.put(path, loaded);
+        }
+        return loaded.spec;
+    }
+
+    /** Write a frame of type TYPE carrying BODY to OUT. */
+    static void writeFrame(DataOutputStream out, byte type, byte[] body)
+        throws IOException {
+        out.writeByte(type);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /** Return a stream reading from CHANNEL.  Unlike the streams of
+     *  java.nio.channels.Channels, it can be read while another thread
+     *  writes to CHANNEL. */
+    static InputStream inputStream(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                return channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /** Return a stream writing to CHANNEL, which can be written while
+     *  another thread reads from CHANNEL. */
+    static OutputStream outputStream(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            }
+        };
+    }
+
+    /** An output stream sending everything written to it as DATA frames
+     *  on a DataOutputStream. */
+    private static class FrameStream extends OutputStream {
+        /** A stream writing frames to OUT. */
+        FrameStream(DataOutputStream out) {
+            _out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                _out.writeByte(DATA);
+                _out.writeInt(len);
+                _out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush();
+        }
+
+        /** Destination of frames. */
+        private final DataOutputStream _out;
+    }
+
+    /** A parsed configuration and the modification time of its file. */
+    private static class LoadedSpec {
+        /** SPEC, parsed from a file last modified at MODIFIED. */
+        LoadedSpec(long modified, MachineSpec spec) {
+            this.modified = modified;
+            this.spec = spec;
+        }
+
+        /** Modification time of the file when parsed. */
+        private final long modified;
+
+        /** The parsed configuration. */
+        private final MachineSpec spec;
+    }
+
+    /** Channel on which connections arrive. */
+    private final ServerSocketChannel _listener;
+
+    /** Runs the handling of connections. */
+    private final ExecutorService _threads;
+
+    /** Parsed configurations, by absolute file name. */
+    private final ConcurrentHashMap<String, LoadedSpec> _specs =
+        new ConcurrentHashMap<>();
+
+    /** Latencies of conversion requests. */
+    private final LatencyRecorder _latencies = new LatencyRecorder();
+
+}
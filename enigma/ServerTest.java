@@ -0,0 +1,193 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+
+/** Tests of Server, Client and LatencyRecorder.
+ *  @author Jack Mango
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /** An input file for NAVAL_CONFIG. */
+    private static final String INPUT =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n"
+        + "\n"
+        + "TOOK THE CAMERA OF ROSEWOOD\n"
+        + "* B Beta I II III ZZZZ\n"
+        + "MADE OF SLIDING FOLDING ROSEWOOD\n";
+
+    /** Return the output of Main, or of Client when ADDRESS is non-null,
+     *  on INPUT with configuration file NAVAL_CONFIG, followed by any error
+     *  message. */
+    private static String run(SocketAddress address, Path config,
+                              String input) throws IOException {
+        Path in = Files.createTempFile("enigma", ".in");
+        Path out = Files.createTempFile("enigma", ".out");
+        Files.writeString(in, input);
+        String err = "";
+        try {
+            if (address == null) {
+                new Main(new String[] {config.toString(), in.toString(),
+                                       out.toString()}).process();
+            } else {
+                Client.convert(address, config.toString(),
+                               Files.newInputStream(in),
+                               Files.newOutputStream(out));
+            }
+        } catch (EnigmaException excp) {
+            err = "Error: " + excp.getMessage();
+        }
+        String result = Files.readString(out) + err;
+        Files.delete(in);
+        Files.delete(out);
+        return result;
+    }
+
+    /** Check that a server listening on LISTEN gives the same results as
+     *  Main, serving several clients at once. */
+    private void checkServer(SocketAddress listen) throws Exception {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Files.writeString(config, NAVAL_CONFIG);
+        Server server = new Server(Server.listen(listen));
+        SocketAddress address = server.address();
+        Thread serving = new Thread(server::serve);
+        serving.start();
+        try {
+            String expected = run(null, config, INPUT);
+            assertEquals(4, expected.split("\n").length);
+            assertEquals(expected, run(address, config, INPUT));
+            String bad = INPUT + "HELLO world\n";
+            assertEquals(run(null, config, bad), run(address, config, bad));
+            assertTrue(run(address, config, bad).endsWith(
+                "Error: Unknown character: w"));
+
+            String[] results = new String[6];
+            ArrayList<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < results.length; i += 1) {
+                final int k = i;
+                clients.add(new Thread(() -> {
+                    try {
+                        results[k] = run(address, config, INPUT);
+                    } catch (IOException excp) {
+                        results[k] = excp.toString();
+                    }
+                }));
+            }
+            for (Thread client : clients) {
+                client.start();
+            }
+            for (Thread client : clients) {
+                client.join();
+            }
+            for (String result : results) {
+                assertEquals(expected, result);
+            }
+            assertEquals(7, server.latencies().count());
+
+            ByteArrayOutputStream stats = new ByteArrayOutputStream();
+            Client.stats(address, stats);
+            assertTrue(stats.toString().startsWith("requests 7,"));
+        } finally {
+            server.close();
+            serving.join();
+            Files.delete(config);
+        }
+    }
+
+    @Test
+    public void tcpTest() throws Exception {
+        checkServer(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                          0));
+    }
+
+    @Test
+    public void unixSocketTest() throws Exception {
+        Path dir = Files.createTempDirectory("enigma");
+        Path socket = dir.resolve("enigma.sock");
+        checkServer(UnixDomainSocketAddress.of(socket));
+        Files.deleteIfExists(socket);
+        Files.delete(dir);
+    }
+
+    @Test
+    public void internalErrorTest() throws Exception {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Files.writeString(config, UPPER_STRING + "\n 99999999999 3\n");
+        Server server = new Server(Server.listen(new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), 0)));
+        Thread serving = new Thread(server::serve);
+        serving.start();
+        try {
+            assertEquals("Error: internal server error",
+                         run(server.address(), config, INPUT));
+        } finally {
+            server.close();
+            serving.join();
+            Files.delete(config);
+        }
+    }
+
+    @Test
+    public void closedConnectionTest() throws Exception {
+        ServerSocketChannel listener = Server.listen(new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), 0));
+        Thread closer = new Thread(() -> {
+            try {
+                listener.accept().close();
+            } catch (IOException excp) {
+                return;
+            }
+        });
+        closer.start();
+        Path config = Files.createTempFile("enigma", ".conf");
+        try {
+            assertEquals("Error: server closed connection",
+                         run(listener.getLocalAddress(), config, INPUT));
+        } finally {
+            closer.join();
+            listener.close();
+            Files.delete(config);
+        }
+    }
+
+    @Test
+    public void latencyTest() {
+        LatencyRecorder latencies = new LatencyRecorder();
+        for (long v = 1; v <= 1000; v += 1) {
+            latencies.record(v * 100);
+        }
+        assertEquals(1000, latencies.count());
+        assertEquals(100000, latencies.max());
+        long p50 = latencies.percentile(50);
+        long p99 = latencies.percentile(99);
+        assertTrue(p50 >= 50000 && p50 <= 50000 * 107 / 100);
+        assertTrue(p99 >= 99000 && p99 <= 100000);
+        for (long v = 0; v < 1 << 20; v += 7) {
+            assertTrue(LatencyRecorder.upperBound(
+                           LatencyRecorder.bucket(v)) >= v);
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package enigma;
+
+/** An Enigma machine built from a MachineSpec, with its own rotor
+ *  positions.  A session may be used by one thread at a time; any
+ *  number of sessions from the same spec may run concurrently.
+ *  @author Jack Mango
+ */
+public final class Session {
+
+    /** A session of SPEC converting with MACH. */
+    Session(MachineSpec spec, Machine mach) {
+        _spec = spec;
+        _machine = mach;
+    }
+
+    /** Set me up according to the settings line SETTINGS
+     *  ("* B Beta III IV I AXAE (HQ) (EX)"), remembering the resulting
+     *  state for reset. */
+    public void setUp(String settings) {
+        _spec.settings(settings).applyTo(_machine);
+        _start = _machine.snapshot();
+    }
+
+    /** Return to the state of my last setUp. */
+    public void reset() {
+        _machine.restore(_start);
+    }
+
+    /** Return the conversion of MSG, which must consist of characters of
+     *  my alphabet, advancing my rotors accordingly. */
+    public String convert(String msg) {
+        return _machine.convert(msg);
+    }
+
+    /** Return the current positions of my non-reflector rotors, leftmost
+     *  first, in the form used in settings lines. */
+    public String rotorSettings() {
+        return _machine.rotorSettings();
+    }
+
+    /** Return the spec I was built from. */
+    public MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Return my machine. */
+    Machine machine() {
+        return _machine;
+    }
+
+    /** The spec I was built from. */
+    private final MachineSpec _spec;
+
+    /** My machine. */
+    private final Machine _machine;
+
+    /** State after my last setUp. */
+    private MachineState _start;
+
+}
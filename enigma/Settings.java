@@ -0,0 +1,108 @@
+package enigma;
+
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** A parsed settings line ("* B Beta III IV I AXAE (HQ) (EX)"): the
+ *  names of the rotors to insert, their initial positions and the
+ *  plugboard.  Immutable, and so may be applied to any number of
+ *  machines.
+ *  @author Jack Mango
+ */
+final class Settings {
+
+    /** Settings putting the rotors named ROTORS at POSITIONS (alphabet
+     *  indices), with plugboard PLUGBOARD. */
+    private Settings(String[] rotors, int[] positions,
+                     Permutation plugboard) {
+        _rotors = rotors;
+        _positions = positions;
+        _plugboard = plugboard;
+    }
+
+    /** Return the settings given by LINE for MACH and machines with the
+     *  same configuration.  LINE must have the format specified in the
+     *  assignment.  The rotors and their positions are checked before
+     *  the plugboard, so that a line with several errors reports the
+     *  one that setting MACH up step by step would.  Does not change
+     *  MACH. */
+    static Settings parse(String line, Machine mach) {
+        String[] s = splitSpaces(line);
+        int numRotors = mach.numRotors();
+        if (s.length < numRotors + 2) {
+            throw error("Invalid settings provided!");
+        }
+        String[] rotors = new String[numRotors];
+        for (int i = 1; i <= numRotors; i++) {
+            rotors[i - 1] = s[i];
+        }
+        mach.checkRotors(rotors);
+        int[] positions = mach.settingIndices(s[numRotors + 1]);
+        StringBuilder cycles = new StringBuilder();
+        for (int i = numRotors + 2; i < s.length; i++) {
+            cycles.append(s[i]);
+        }
+        return new Settings(rotors, positions,
+                            new Permutation(cycles.toString(),
+                                            mach.alphabet()));
+    }
+
+    /** Insert my rotors into MACH, set them, and install my plugboard. */
+    void applyTo(Machine mach) {
+        mach.insertRotors(_rotors);
+        mach.setRotors(_positions);
+        mach.setPlugboard(_plugboard);
+        Metrics metrics = Metrics.GLOBAL;
+        if (metrics != null) {
+            metrics.setUp();
+        }
+    }
+
+    /** Return the settings line putting the rotors named ROTORS at the
+     *  positions POSN (indices in ALPHA), with plugboard cycles
+     *  PLUGBOARD. */
+    static String line(String[] rotors, int[] posn, Alphabet alpha,
+                       String plugboard) {
+        StringBuilder result = new StringBuilder("*");
+        for (String name : rotors) {
+            result.append(' ').append(name);
+        }
+        result.append(' ');
+        for (int p : posn) {
+            result.appendCodePoint(alpha.toCodePoint(p));
+        }
+        if (!plugboard.isBlank()) {
+            result.append(' ').append(plugboard.trim());
+        }
+        return result.toString();
+    }
+
+    /** Return the pieces of LINE separated by single blanks, dropping
+     *  trailing empty pieces (as for LINE.split(" ")). */
+    static String[] splitSpaces(String line) {
+        ArrayList<String> pieces = new ArrayList<>();
+        int start = 0, end = 0;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i == line.length() || line.charAt(i) == ' ') {
+                pieces.add(line.substring(start, i));
+                if (i > start) {
+                    end = pieces.size();
+                }
+                start = i + 1;
+            }
+        }
+        return pieces.subList(0, end).toArray(new String[end]);
+    }
+
+    /** Names of the rotors, reflector first. */
+    private final String[] _rotors;
+
+    /** Initial positions of the non-reflector rotors, as alphabet
+     *  indices. */
+    private final int[] _positions;
+
+    /** The plugboard. */
+    private final Permutation _plugboard;
+
+}
@@ -0,0 +1,113 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Sets up a Machine from settings lines, remembering the state each of
+ *  the most recently used lines produced.  Message files repeat the
+ *  same settings lines many times; applying a remembered line restores
+ *  the machine's rotors, their positions and its plugboard from a
+ *  MachineState, which takes time proportional to the number of slots
+ *  plus the alphabet size, instead of parsing the line, validating the
+ *  rotor order and building the plugboard again (the plugboard is only
+ *  rebuilt if it differs from the machine's current one).  Only lines
+ *  that were applied successfully are remembered, so a line in error
+ *  fails the same way every time.  Lines are keyed with trailing blanks
+ *  removed, which Settings.parse ignores.  A cache belongs to one
+ *  machine and is used by one thread at a time.
+ *  @author Jack Mango
+ */
+final class SetupCache {
+
+    /** Default number of settings lines remembered, unless the system
+     *  property enigma.setupCache gives another. */
+    static final int CAPACITY = 256;
+
+    /** A cache setting up MACH, remembering the last CAPACITY lines
+     *  used (or those given by enigma.setupCache). */
+    SetupCache(Machine mach) {
+        this(mach, Integer.getInteger("enigma.setupCache", CAPACITY));
+    }
+
+    /** A cache setting up MACH, remembering the last CAPACITY lines used.
+     *  A CAPACITY of 0 remembers none. */
+    SetupCache(Machine mach, int capacity) {
+        _machine = mach;
+        _capacity = capacity;
+        _states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, MachineState> eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /** Set up my machine according to the settings line LINE. */
+    void apply(String line) {
+        String key = normalize(line);
+        MachineState state = _states.get(key);
+        Metrics metrics = Metrics.GLOBAL;
+        if (state != null) {
+            _hits += 1;
+            _machine.restore(state);
+            if (metrics != null) {
+                metrics.setUp();
+                metrics.setupCached(true);
+            }
+        } else {
+            _misses += 1;
+            if (metrics != null) {
+                metrics.setupCached(false);
+            }
+            Settings.parse(line, _machine).applyTo(_machine);
+            if (_capacity > 0) {
+                _states.put(key, _machine.snapshot());
+            }
+        }
+    }
+
+    /** Return the machine I set up. */
+    Machine machine() {
+        return _machine;
+    }
+
+    /** Return the number of lines applied by restoring a remembered
+     *  state. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lines applied by parsing them. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Return the number of lines remembered. */
+    int size() {
+        return _states.size();
+    }
+
+    /** Return LINE without trailing blanks. */
+    private static String normalize(String line) {
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) == ' ') {
+            end -= 1;
+        }
+        return end == line.length() ? line : line.substring(0, end);
+    }
+
+    /** The machine I set up. */
+    private final Machine _machine;
+
+    /** Maximum number of lines remembered. */
+    private final int _capacity;
+
+    /** Maps normalized settings lines to the states they produced, least
+     *  recently used first. */
+    private final LinkedHashMap<String, MachineState> _states;
+
+    /** Numbers of lines applied from and not from the cache. */
+    private long _hits, _misses;
+
+}
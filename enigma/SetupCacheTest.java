@@ -0,0 +1,93 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+
+/** Tests of SetupCache.
+ *  @author Jack Mango
+ */
+public class SetupCacheTest {
+
+    /** Settings lines for NAVAL_CONFIG. */
+    private static final String[] LINES = {
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+        "* B Gamma I II III ZZZZ",
+        "* B Beta II IV I QEZX (AB)(CD)",
+    };
+
+    /** A long message. */
+    private static final String MSG =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING"
+        + "FOLDINGROSEWOODNEATLYPUTITALLTOGETHER";
+
+    /** Return the conversion of MSG by a fresh machine set up by LINE. */
+    private static String fresh(MachineSpec spec, String line) {
+        Machine mach = spec.newMachine();
+        spec.settings(line).applyTo(mach);
+        return mach.convert(MSG);
+    }
+
+    @Test
+    public void repeatTest() {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        Machine mach = spec.newMachine();
+        SetupCache cache = new SetupCache(mach, 8);
+        for (int round = 0; round < 3; round++) {
+            for (String line : LINES) {
+                cache.apply(line);
+                assertEquals(fresh(spec, line), mach.convert(MSG));
+            }
+        }
+        assertEquals(LINES.length, cache.misses());
+        assertEquals(2 * LINES.length, cache.hits());
+        cache.apply(LINES[0] + "   ");
+        assertEquals(fresh(spec, LINES[0]), mach.convert(MSG));
+        assertEquals(2 * LINES.length + 1, cache.hits());
+    }
+
+    @Test
+    public void evictionTest() {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        Machine mach = spec.newMachine();
+        SetupCache cache = new SetupCache(mach, 2);
+        cache.apply(LINES[0]);
+        cache.apply(LINES[1]);
+        cache.apply(LINES[0]);
+        cache.apply(LINES[2]);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.hits());
+        cache.apply(LINES[0]);
+        assertEquals(2, cache.hits());
+        cache.apply(LINES[1]);
+        assertEquals(2, cache.hits());
+        assertEquals(fresh(spec, LINES[1]), mach.convert(MSG));
+
+        SetupCache none = new SetupCache(mach, 0);
+        none.apply(LINES[0]);
+        none.apply(LINES[0]);
+        assertEquals(0, none.hits());
+        assertEquals(0, none.size());
+        assertEquals(fresh(spec, LINES[0]), mach.convert(MSG));
+    }
+
+    @Test
+    public void errorTest() {
+        MachineSpec spec = MachineSpec.parse(NAVAL_CONFIG);
+        Machine mach = spec.newMachine();
+        SetupCache cache = new SetupCache(mach, 8);
+        String bad = "* B Beta III III I AXLE";
+        for (int k = 0; k < 2; k++) {
+            try {
+                cache.apply(bad);
+                fail("duplicate rotors accepted");
+            } catch (EnigmaException excp) {
+                assertEquals("Duplicate rotors!", excp.getMessage());
+            }
+        }
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(0, cache.size());
+    }
+
+}
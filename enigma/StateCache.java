@@ -0,0 +1,109 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A bounded cache of composite substitutions, one per rotor-position
+ *  state of a Machine.  States are identified by non-negative long keys.
+ *  The cache is direct-mapped: each key has exactly one slot, and a new
+ *  key evicts whatever occupied its slot.  A table is only built when
+ *  a key is seen for the second time while still owning its slot, so
+ *  states that are passed through once cost nothing beyond a tag store.
+ *  @author Jack Mango
+ */
+class StateCache {
+
+    /** Approximate per-entry overhead in bytes, on top of the table. */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    /** A cache for tables of SIZE entries over a space of NUMSTATES keys
+     *  (or an unbounded space if NUMSTATES <= 0), using at most about
+     *  MAXBYTES bytes of memory. */
+    StateCache(int size, long numStates, long maxBytes) {
+        long entries = maxBytes / (4L * size + ENTRY_OVERHEAD);
+        if (numStates > 0) {
+            entries = Math.min(entries, numStates);
+        }
+        if (entries < 1) {
+            throw error("State cache memory bound too small");
+        }
+        _size = size;
+        int cap = (int) Math.min(entries, Integer.MAX_VALUE - 8);
+        _tags = new long[cap];
+        _filled = new boolean[cap];
+        _tables = new int[cap][];
+        clear();
+    }
+
+    /** Return the filled table cached for KEY, or null if there is none. */
+    int[] get(long key) {
+        int slot = slot(key);
+        if (_tags[slot] == key && _filled[slot]) {
+            _hits += 1;
+            return _tables[slot];
+        }
+        return null;
+    }
+
+    /** Claim the slot for KEY.  The first time KEY is seen, records it
+     *  and returns null.  On a second sighting, returns an array of
+     *  size() entries that the caller must fill with the substitution
+     *  for KEY before the next call to this cache. */
+    int[] claim(long key) {
+        int slot = slot(key);
+        _misses += 1;
+        if (_tags[slot] != key) {
+            _tags[slot] = key;
+            _filled[slot] = false;
+            return null;
+        }
+        if (_tables[slot] == null) {
+            _tables[slot] = new int[_size];
+        }
+        _filled[slot] = true;
+        return _tables[slot];
+    }
+
+    /** Forget all cached tables, keeping their storage for reuse. */
+    void clear() {
+        Arrays.fill(_tags, -1);
+        Arrays.fill(_filled, false);
+    }
+
+    /** Return the number of lookups answered from the cache. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that were not. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Return the number of slots in this cache. */
+    int capacity() {
+        return _tags.length;
+    }
+
+    /** Return the slot for KEY. */
+    private int slot(long key) {
+        return (int) (key % _tags.length);
+    }
+
+    /** Number of entries in each table. */
+    private final int _size;
+
+    /** Key currently owning each slot, or -1. */
+    private final long[] _tags;
+
+    /** True for slots whose table holds the substitution for its tag. */
+    private final boolean[] _filled;
+
+    /** Table storage for each slot, allocated on first use. */
+    private final int[][] _tables;
+
+    /** Hit and miss counters. */
+    private long _hits, _misses;
+
+}
@@ -0,0 +1,195 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** Computes where the moving rotors of a Machine will be after any
+ *  number of key presses, without pressing the keys.
+ *
+ *  The moving rotors occupy a contiguous block of slots ending with the
+ *  rightmost rotor.  Number them 0..K-1 from the left and let C[j] be
+ *  true when rotor j is at a notch before a key press.  Machine.convert
+ *  then advances rotor j < K-1 iff (E[j] && C[j]) || C[j+1], where
+ *  E[0] is false and E[j+1] = !(E[j] && C[j]), and always advances
+ *  rotor K-1.  Whenever rotors 0..j-1 are idle, rotors j..K-1 run on
+ *  their own, and rotor j-1 only moves when rotor j reaches a notch.
+ *  Jumps are computed as such free runs, one level at a time: the free
+ *  run of the rightmost rotor is a single addition, each completed run
+ *  of a deeper level is memoized by the positions of the rotors it
+ *  involves, and repeated runs are skipped whole once their sequence is
+ *  seen to cycle.  The work is thus bounded by the number of distinct
+ *  rotor configurations met at carries, not by the number of steps.
+ *  @author Jack Mango
+ */
+class StepSchedule {
+
+    /** A schedule for the rotors ROTORS[FIRST..ROTORS.length-1], all of
+     *  which must be moving rotors over alphabets of size N. */
+    StepSchedule(Rotor[] rotors, int first, int n) {
+        _k = rotors.length - first;
+        _n = n;
+        _rotors = new Rotor[_k];
+        _notch = new boolean[_k][n];
+        _dist = new long[_k][n];
+        _pos = new int[_k];
+        for (int j = 0; j < _k; j++) {
+            _rotors[j] = rotors[first + j];
+            for (int p = 0; p < n; p++) {
+                _notch[j][p] = _rotors[j].atNotch(p);
+            }
+            for (int p = 0; p < n; p++) {
+                _dist[j][p] = Long.MAX_VALUE;
+                for (int d = 0; d < n; d++) {
+                    if (_notch[j][(p + d) % n]) {
+                        _dist[j][p] = d;
+                        break;
+                    }
+                }
+            }
+        }
+        _memo = new ArrayList<>();
+        for (int j = 0; j < _k; j++) {
+            _memo.add(new HashMap<>());
+        }
+    }
+
+    /** Advance my rotors as if STEPS keys had been pressed. */
+    void advance(long steps) {
+        for (int j = 0; j < _k; j++) {
+            _pos[j] = _rotors[j].setting();
+        }
+        freeRun(0, steps, false);
+        for (int j = 0; j < _k; j++) {
+            _rotors[j].set(_pos[j]);
+        }
+    }
+
+    /** Advance my rotors by one key press, exactly as Machine.convert
+     *  does, starting at rotor J with E[J] equal to E. */
+    private void step(int j, boolean e) {
+        for (; j < _k - 1; j++) {
+            boolean dbl = e && _notch[j][_pos[j]];
+            if (dbl || _notch[j + 1][_pos[j + 1]]) {
+                _pos[j] = (_pos[j] + 1) % _n;
+            }
+            e = !dbl;
+        }
+        _pos[_k - 1] = (_pos[_k - 1] + 1) % _n;
+    }
+
+    /** Run rotors J..K-1 with rotors 0..J-1 idle for at most T steps,
+     *  stopping early, if STOP, just before a step in which rotor J is at
+     *  a notch.  Returns the number of steps taken. */
+    private long freeRun(int j, long t, boolean stop) {
+        if (j == _k - 1) {
+            long m = stop ? Math.min(t, _dist[j][_pos[j]]) : t;
+            _pos[j] = (int) ((_pos[j] + m % _n) % _n);
+            return m;
+        }
+        long done = 0, carries = 0;
+        HashMap<String, long[]> seen = new HashMap<>();
+        while (done < t && !(stop && _notch[j][_pos[j]])) {
+            String key = key(j + 1);
+            long[] prev = seen.get(key);
+            if (prev != null) {
+                long len = carries - prev[1], span = done - prev[0];
+                long c = (t - done) / span;
+                if (stop) {
+                    c = Math.min(c, _dist[j][_pos[j]] / len);
+                }
+                _pos[j] = (int) ((_pos[j] + (c % _n) * (len % _n)) % _n);
+                done += c * span;
+                carries += c * len;
+                seen.clear();
+                if (done >= t || (stop && _notch[j][_pos[j]])) {
+                    break;
+                }
+                key = key(j + 1);
+            }
+            seen.put(key, new long[] { done, carries });
+            done += segment(j + 1, t - done);
+            if (_carried) {
+                _pos[j] = (_pos[j] + 1) % _n;
+                carries += 1;
+            }
+        }
+        return done;
+    }
+
+    /** Run rotors I..K-1 freely until rotor I reaches a notch, and then
+     *  perform the key press that carries into rotor I-1 (whose own
+     *  advance is left to the caller), taking at most T steps in all.
+     *  Returns the steps taken and sets _carried to whether the carry
+     *  happened. */
+    private long segment(int i, long t) {
+        String key = key(i);
+        Segment memo = _memo.get(i).get(key);
+        if (memo != null && memo.steps <= t) {
+            System.arraycopy(memo.end, 0, _pos, i, memo.end.length);
+            _carried = true;
+            return memo.steps;
+        }
+        long r = freeRun(i, t, true);
+        _carried = r < t && _notch[i][_pos[i]];
+        if (_carried) {
+            step(i, true);
+            r += 1;
+            int[] end = new int[_k - i];
+            System.arraycopy(_pos, i, end, 0, end.length);
+            _memo.get(i).put(key, new Segment(r, end));
+        }
+        return r;
+    }
+
+    /** Return a key identifying the positions of rotors I..K-1. */
+    private String key(int i) {
+        char[] buf = new char[2 * (_k - i)];
+        for (int j = i; j < _k; j++) {
+            buf[2 * (j - i)] = (char) (_pos[j] >>> 16);
+            buf[2 * (j - i) + 1] = (char) _pos[j];
+        }
+        return new String(buf);
+    }
+
+    /** A completed free run and carry: its length in steps and the
+     *  resulting positions of the rotors involved. */
+    private static class Segment {
+        /** A segment of STEPS steps ending with positions END. */
+        Segment(long steps, int[] end) {
+            this.steps = steps;
+            this.end = end;
+        }
+
+        /** Length of the segment in steps. */
+        private final long steps;
+
+        /** Rotor positions at its end. */
+        private final int[] end;
+    }
+
+    /** Number of moving rotors. */
+    private final int _k;
+
+    /** Alphabet size. */
+    private final int _n;
+
+    /** The moving rotors, left to right. */
+    private final Rotor[] _rotors;
+
+    /** _notch[J][P] is true iff rotor J has a notch at position P. */
+    private final boolean[][] _notch;
+
+    /** _dist[J][P] is the number of advances that take rotor J from P
+     *  to a notch, or Long.MAX_VALUE if it has none. */
+    private final long[][] _dist;
+
+    /** Working positions of the rotors. */
+    private final int[] _pos;
+
+    /** Completed segments, by starting level and positions. */
+    private final ArrayList<HashMap<String, Segment>> _memo;
+
+    /** Whether the last segment ended with a carry. */
+    private boolean _carried;
+
+}
@@ -0,0 +1,178 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/** Property tests of Machine's stepping: comparing Machine.advance with
+ *  repeated conversion, and conversion with a direct rendering of the
+ *  stepping rule.
+ *  @author Jack Mango
+ */
+public class StepScheduleTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Source of random configurations. */
+    private Random random = new Random(61);
+
+    /** Return a random machine over an alphabet of SIZE letters with
+     *  NUMFIXED fixed rotors and NUMMOVING moving rotors, with its rotors
+     *  inserted and set at random. */
+    private Machine randomMachine(int size, int numFixed, int numMoving) {
+        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".substring(0, size);
+        Alphabet alpha = new Alphabet(chars);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        String[] names = new String[1 + numFixed + numMoving];
+        names[0] = "R";
+        rotors.add(new Reflector("R", new Permutation("", alpha)));
+        for (int i = 1; i < names.length; i++) {
+            names[i] = "X" + i;
+            Permutation perm = new Permutation("", alpha);
+            if (i <= numFixed) {
+                rotors.add(new FixedRotor(names[i], perm));
+            } else {
+                String notches = "";
+                for (int c = 0; c < size; c++) {
+                    if (random.nextInt(size) < 2 - (i % 2)) {
+                        notches += chars.charAt(c);
+                    }
+                }
+                rotors.add(new MovingRotor(names[i], perm, notches));
+            }
+        }
+        Machine mach = new Machine(alpha, names.length, numMoving, rotors);
+        mach.insertRotors(names);
+        String setting = "";
+        for (int i = 1; i < names.length; i++) {
+            setting += chars.charAt(random.nextInt(size));
+        }
+        mach.setRotors(setting);
+        return mach;
+    }
+
+    @Test
+    public void matchesStepping() {
+        for (int trial = 0; trial < 300; trial += 1) {
+            int size = 2 + random.nextInt(6);
+            int numFixed = random.nextInt(2);
+            int numMoving = 1 + random.nextInt(5);
+            long seed = random.nextLong();
+            random.setSeed(seed);
+            Machine stepped = randomMachine(size, numFixed, numMoving);
+            random.setSeed(seed);
+            Machine jumped = randomMachine(size, numFixed, numMoving);
+            for (int round = 0; round < 4; round += 1) {
+                int n = random.nextInt(3000);
+                for (int i = 0; i < n; i += 1) {
+                    stepped.convert(0);
+                }
+                jumped.advance(n);
+                assertEquals("trial " + trial + " round " + round,
+                             stepped.rotorSettings(), jumped.rotorSettings());
+            }
+        }
+    }
+
+    /** Advance the rotors in the slots of MACH, including its plugboard,
+     *  whose settings are POS, as for a key press, by scanning every
+     *  slot as Machine once did. */
+    private static void referenceStep(Machine mach, int[] pos) {
+        int n = pos.length;
+        boolean[] notch = new boolean[n];
+        for (int k = 0; k < n; k++) {
+            notch[k] = mach.slot(k).atNotch(pos[k]);
+        }
+        int size = mach.alphabet().size();
+        for (int i = 0; i < n - 1; i++) {
+            if (notch[i + 1]) {
+                if (mach.slot(i).rotates()) {
+                    pos[i] = (pos[i] + 1) % size;
+                }
+                if (i < n - 3 && mach.slot(i).rotates()) {
+                    pos[i + 1] = (pos[i + 1] + 1) % size;
+                    i += 1;
+                }
+            }
+        }
+        pos[n - 2] = (pos[n - 2] + 1) % size;
+    }
+
+    @Test
+    public void matchesReferenceStepping() {
+        for (int trial = 0; trial < 100; trial += 1) {
+            int size = 2 + random.nextInt(6);
+            int numMoving = 1 + random.nextInt(80);
+            Machine mach = randomMachine(size, random.nextInt(20),
+                                         numMoving);
+            int[] pos = new int[mach.numRotors() + 1];
+            for (int k = 0; k < pos.length; k++) {
+                pos[k] = mach.slot(k).setting();
+            }
+            for (int i = 0; i < 2000; i += 1) {
+                if (i % 500 == 499) {
+                    int k = 1 + random.nextInt(pos.length - 2);
+                    int[] setting = new int[pos.length - 2];
+                    System.arraycopy(pos, 1, setting, 0, setting.length);
+                    setting[k - 1] = random.nextInt(size);
+                    mach.setRotors(setting);
+                    pos[k] = setting[k - 1];
+                }
+                mach.convert(0);
+                referenceStep(mach, pos);
+                for (int k = 0; k < pos.length; k++) {
+                    assertEquals("trial " + trial + " step " + i,
+                                 pos[k], mach.slot(k).setting());
+                }
+            }
+        }
+    }
+
+    /** Return the settings of MACH after STEPS key presses, found by
+     *  pressing keys one at a time until its settings repeat and then
+     *  reducing STEPS by the length of the cycle.  MACH must have few
+     *  enough rotor positions to reach a repeat quickly.  Moves MACH. */
+    private static String settingsAfter(Machine mach, long steps) {
+        ArrayList<String> seen = new ArrayList<>();
+        HashMap<String, Integer> first = new HashMap<>();
+        String setting = mach.rotorSettings();
+        while (!first.containsKey(setting)) {
+            first.put(setting, seen.size());
+            seen.add(setting);
+            mach.convert(0);
+            setting = mach.rotorSettings();
+        }
+        long start = first.get(setting), period = seen.size() - start;
+        if (steps < start) {
+            return seen.get((int) steps);
+        }
+        return seen.get((int) (start + (steps - start) % period));
+    }
+
+    @Test
+    public void largeJump() {
+        long steps = 1_000_000_000_000_000L;
+        for (int trial = 0; trial < 5; trial += 1) {
+            long seed = random.nextLong();
+            random.setSeed(seed);
+            Machine jumped = randomMachine(26, 1, 3);
+            random.setSeed(seed);
+            Machine halves = randomMachine(26, 1, 3);
+            random.setSeed(seed);
+            String expected = settingsAfter(randomMachine(26, 1, 3), steps);
+            jumped.advance(steps);
+            assertEquals("trial " + trial, expected, jumped.rotorSettings());
+            halves.advance(steps / 2 - 12345);
+            halves.advance(steps / 2 + 12345);
+            assertEquals("trial " + trial, expected, halves.rotorSettings());
+        }
+    }
+
+}
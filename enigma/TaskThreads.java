@@ -0,0 +1,39 @@
+package enigma;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/** Executors for the tasks of Server and BatchEncryptor, which run each
+ *  task on a virtual thread where the JVM has them (Java 21 and later)
+ *  and otherwise on pooled daemon platform threads.
+ *  @author Jack Mango
+ */
+final class TaskThreads {
+
+    /** Not instantiable. */
+    private TaskThreads() {
+    }
+
+    /** Return an executor running each task on a new virtual thread, if
+     *  this JVM has them, and otherwise on a pool of daemon platform
+     *  threads: PLATFORMMAX of them, or, if PLATFORMMAX is 0, as many as
+     *  are needed.  PLATFORMMAX does not limit the virtual threads, so
+     *  callers that must run no more than a given number of tasks at a
+     *  time limit them themselves (see BatchEncryptor). */
+    static ExecutorService executor(int platformMax) {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            };
+            return platformMax == 0 ? Executors.newCachedThreadPool(factory)
+                : Executors.newFixedThreadPool(platformMax, factory);
+        }
+    }
+
+}
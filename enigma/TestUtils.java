@@ -1,6 +1,15 @@
 package enigma;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
 import java.util.HashMap;
+import java.util.Scanner;
 
 /** Utility definitions for use in unit tests.
  *  @author P. N. Hilfinger
@@ -39,6 +48,63 @@ class TestUtils {
                   + "(PW) (QZ) (SX) (UY)");
     }
 
+    /** The type and notches of each naval rotor, as written in a
+     *  configuration file. */
+    static final HashMap<String, String> NAVAL_TYPES = new HashMap<>();
+    static {
+        NAVAL_TYPES.put("I", "MQ");
+        NAVAL_TYPES.put("II", "ME");
+        NAVAL_TYPES.put("III", "MV");
+        NAVAL_TYPES.put("IV", "MJ");
+        NAVAL_TYPES.put("V", "MZ");
+        NAVAL_TYPES.put("VI", "MZM");
+        NAVAL_TYPES.put("VII", "MZM");
+        NAVAL_TYPES.put("VIII", "MZM");
+        NAVAL_TYPES.put("Beta", "N");
+        NAVAL_TYPES.put("Gamma", "N");
+        NAVAL_TYPES.put("B", "R");
+        NAVAL_TYPES.put("C", "R");
+    }
+
+    /** Return the text of a configuration over the upper-case alphabet
+     *  for machines with NUMROTORS slots and NUMPAWLS pawls, whose
+     *  available rotors are the naval rotors named ROTORS. */
+    static String navalConfig(int numRotors, int numPawls,
+                              String... rotors) {
+        StringBuilder result = new StringBuilder(UPPER_STRING);
+        result.append(String.format("%n %d %d%n", numRotors, numPawls));
+        for (String name : rotors) {
+            result.append(String.format(" %-5s %-4s %s%n", name,
+                                        NAVAL_TYPES.get(name),
+                                        NAVALA.get(name)));
+        }
+        return result.toString();
+    }
+
+    /** The configuration of four-rotor naval machines used by most
+     *  tests: rotors I to IV, Beta and Gamma and reflector B. */
+    static final String NAVAL_CONFIG =
+        navalConfig(5, 3, "I", "II", "III", "IV", "Beta", "Gamma", "B");
+
+    /** Return the output of MessageProcessor on INPUT, using a new
+     *  machine for NAVAL_CONFIG, followed by any error message.  The
+     *  byte-level processors must reproduce it exactly. */
+    static String messageOutput(String input) throws IOException {
+        Machine mach = MachineSpec.read(new Scanner(NAVAL_CONFIG))
+            .newMachine();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(out);
+        String err = "";
+        try {
+            new MessageProcessor(mach, null)
+                .process(new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(input.getBytes()))), writer);
+        } catch (EnigmaException excp) {
+            err = "Error: " + excp.getMessage();
+        }
+        return out.toString() + err;
+    }
+
     /** The mapping of the upper-case alphabet by NAVALA. */
     static final HashMap<String, String> NAVALA_MAP = new HashMap<>();
     static {
@@ -0,0 +1,127 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** A bounded collection of the K best (score, key) pairs offered to it,
+ *  kept as a binary min-heap in primitive arrays so that offering a
+ *  pair never allocates.  A pair is better than another if its score is
+ *  higher, or if the scores are equal and its key is smaller.
+ *  @author Jack Mango
+ */
+class TopK {
+
+    /** An empty collection keeping at most K pairs. */
+    TopK(int k) {
+        if (k < 1) {
+            throw error("Must keep at least one candidate");
+        }
+        _scores = new long[k];
+        _keys = new long[k];
+    }
+
+    /** Return the number of pairs I hold. */
+    int size() {
+        return _size;
+    }
+
+    /** Offer the pair (SCORE, KEY), keeping it if it is among the best
+     *  K pairs offered so far.  Returns true iff it was kept. */
+    boolean offer(long score, long key) {
+        if (_size < _scores.length) {
+            _scores[_size] = score;
+            _keys[_size] = key;
+            _size += 1;
+            siftUp(_size - 1);
+            return true;
+        } else if (!worse(_scores[0], _keys[0], score, key)) {
+            return false;
+        }
+        _scores[0] = score;
+        _keys[0] = key;
+        siftDown(0);
+        return true;
+    }
+
+    /** Offer all the pairs in OTHER. */
+    void addAll(TopK other) {
+        for (int i = 0; i < other._size; i++) {
+            offer(other._scores[i], other._keys[i]);
+        }
+    }
+
+    /** Sort my pairs from best to worst, so that score(0) and key(0) are
+     *  the best pair.  I must not be offered anything afterwards. */
+    void sort() {
+        for (int n = _size - 1; n > 0; n--) {
+            swap(0, n);
+            int size = _size;
+            _size = n;
+            siftDown(0);
+            _size = size;
+        }
+    }
+
+    /** Return the score of pair K. */
+    long score(int k) {
+        return _scores[k];
+    }
+
+    /** Return the key of pair K. */
+    long key(int k) {
+        return _keys[k];
+    }
+
+    /** Return true iff pair (S0, K0) is worse than pair (S1, K1). */
+    private static boolean worse(long s0, long k0, long s1, long k1) {
+        return s0 < s1 || (s0 == s1 && k0 > k1);
+    }
+
+    /** Return true iff my pair I is worse than my pair J. */
+    private boolean worse(int i, int j) {
+        return worse(_scores[i], _keys[i], _scores[j], _keys[j]);
+    }
+
+    /** Restore the heap property upwards from I. */
+    private void siftUp(int i) {
+        while (i > 0 && worse(i, (i - 1) / 2)) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    /** Restore the heap property downwards from I. */
+    private void siftDown(int i) {
+        while (true) {
+            int least = i;
+            for (int c = 2 * i + 1; c <= 2 * i + 2 && c < _size; c++) {
+                if (worse(c, least)) {
+                    least = c;
+                }
+            }
+            if (least == i) {
+                return;
+            }
+            swap(i, least);
+            i = least;
+        }
+    }
+
+    /** Exchange my pairs I and J. */
+    private void swap(int i, int j) {
+        long s = _scores[i], k = _keys[i];
+        _scores[i] = _scores[j];
+        _keys[i] = _keys[j];
+        _scores[j] = s;
+        _keys[j] = k;
+    }
+
+    /** Scores of my pairs, in heap order. */
+    private final long[] _scores;
+
+    /** Keys of my pairs, in heap order. */
+    private final long[] _keys;
+
+    /** Number of pairs held. */
+    private int _size;
+
+}
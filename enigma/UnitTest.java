@@ -11,7 +11,23 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(PermutationTest.class,
-                                      MovingRotorTest.class));
+                                      AlphabetTest.class,
+                                      MovingRotorTest.class,
+                                      MachineTest.class,
+                                      MainTest.class,
+                                      StepScheduleTest.class,
+                                      MachineSpecTest.class,
+                                      CribSearchTest.class,
+                                      IocSearchTest.class,
+                                      ServerTest.class,
+                                      ConfigImageTest.class,
+                                      LockstepBatchTest.class,
+                                      BatchEncryptorTest.class,
+                                      MetricsTest.class,
+                                      ProfileTest.class,
+                                      ByteProcessorTest.class,
+                                      MappedProcessorTest.class,
+                                      SetupCacheTest.class));
     }
 
 }